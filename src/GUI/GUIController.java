@@ -1,10 +1,20 @@
 package GUI;
 
+import dumbchain.Block;
+import dumbchain.ChainEvent;
+import dumbchain.MiningJob;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.TableView;
 import javafx.scene.paint.Color;
 import javafx.stage.Stage;
+import javafx.util.Duration;
+
+import java.util.concurrent.Flow;
 
 /**
  * Manage events that occur on the GUI
@@ -13,6 +23,8 @@ public class GUIController {
 
     private GUIView view;
     private GUIModel model;
+    // Receiver of the changes of the current blockchain
+    private TableUpdater updater;
 
     public GUIController() {
         this.view = new GUIView();
@@ -31,7 +43,9 @@ public class GUIController {
         stage.setScene(scene);
 
         this.populateTableViews();
+        this.showBlockState();
         this.setupHandler();
+        this.subscribe();
 
         stage.show();
     }
@@ -48,19 +62,29 @@ public class GUIController {
         view.btnAddTxDir.setOnAction(e -> {
             model.addDirectTX(view.tfTXDir.getText());
             view.tfTXDir.clear();
-            this.refreshTableViews();
         });
 
         // Add a transaction to blockchain as a Miner
         view.btnAddTxMine.setOnAction(e -> {
-            if (model.addMinerTX(view.tfTXMin.getText())) {
-                infoAlert.setTitle("New block");
-                infoAlert.setHeaderText("The miner has mined a new block");
-                infoAlert.setContentText("The miner's TX pool reached the block threshold.");
-                infoAlert.showAndWait();
-                this.refreshTableViews();
+            MiningJob job;
+            try {
+                job = model.addMinerTX(view.tfTXMin.getText());
+            } catch (Exception exception) {
+                errorAlert.setHeaderText("Miner TX Error");
+                errorAlert.setContentText(exception.getMessage());
+                errorAlert.showAndWait();
+                return;
+            }
+            if (job != null) {
+                // The block is mined in background
+                this.trackMining(job, () -> {
+                    infoAlert.setTitle("New block");
+                    infoAlert.setHeaderText("The miner has mined a new block");
+                    infoAlert.setContentText("The miner's TX pool reached the block threshold.");
+                    infoAlert.showAndWait();
+                }, errorAlert);
             }
-            view.blockState.setText(model.getMinerPoolState() + "/" + model.getBlockThreshold());
+            this.showBlockState();
             view.tfTXMin.clear();
         });
 
@@ -70,8 +94,8 @@ public class GUIController {
                 int blockId = Integer.parseInt(view.tfBlockMin.getText());
                 view.tfBlockMin.clear();
                 if (blockId >= 0 && blockId < model.getChainSize()) {
-                    model.mineBlock(blockId);
-                    this.refreshTableViews();
+                    this.trackMining(model.mineBlock(blockId), () -> {
+                    }, errorAlert);
                 }
             } catch (Exception exception) {
                 errorAlert.setHeaderText("Mining Block Error");
@@ -100,7 +124,6 @@ public class GUIController {
             String restoreStatus = model.restoreState();
 
             if (restoreStatus == "OK") {
-                this.refreshTableViews();
                 view.chainStatus.setText("UNKNOWN");
                 view.chainStatus.setFill(Color.BLACK);
             } else {
@@ -116,11 +139,40 @@ public class GUIController {
             view.chainStatus.setText("UNKNOWN");
             view.chainStatus.setFill(Color.BLACK);
             this.refreshTableViews();
+            this.showBlockState();
+            this.subscribe();
         });
 
 
     }
 
+    /**
+     * Show the progress of a mining job.
+     *
+     * @param job        mining job
+     * @param onSuccess  executed on the JavaFX thread when the block is mined
+     * @param errorAlert alert used if the job fails
+     */
+    private void trackMining(MiningJob job, Runnable onSuccess, Alert errorAlert) {
+        Timeline progress = new Timeline(new KeyFrame(Duration.millis(250), e ->
+                view.miningState.setText(String.format("block %d, %d attempts, %.0f H/s",
+                        job.getBlock().getId(), job.getAttempts(), job.getHashrate()))));
+        progress.setCycleCount(Timeline.INDEFINITE);
+        progress.play();
+
+        job.whenComplete((result, error) -> Platform.runLater(() -> {
+            progress.stop();
+            view.miningState.setText("idle");
+            if (error == null) {
+                onSuccess.run();
+            } else {
+                errorAlert.setHeaderText("Mining Block Error");
+                errorAlert.setContentText("Mining of block " + job.getBlock().getId() + " stopped: " + error.getMessage());
+                errorAlert.showAndWait();
+            }
+        }));
+    }
+
     /**
      * Populate the table views (blockchain data and transaction data)
      */
@@ -136,6 +188,89 @@ public class GUIController {
         view.blockChainTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
     }
 
+    /**
+     * Start updating the table views with the changes of the current blockchain
+     */
+    private void subscribe() {
+        this.updater = new TableUpdater();
+        model.subscribe(updater);
+    }
+
+    /**
+     * Update the rows of a block and of its transactions
+     *
+     * @param block new version of the block
+     */
+    @SuppressWarnings("unchecked")
+    private void showBlock(Block block) {
+        ObservableList<ObservableList<String>> blocks = view.blockChainTable.getItems();
+        ObservableList<ObservableList<String>> txs = view.txTable.getItems();
+        int id = block.getId();
+        if (id > blocks.size()) {
+            this.refreshTableViews();
+            return;
+        }
+        // The transactions are listed by block: skip the ones of the blocks before
+        int first = 0;
+        for (int i = 0; i < id; i++)
+            first += Integer.parseInt(blocks.get(i).get(4));
+        int count = id < blocks.size() ? Integer.parseInt(blocks.get(id).get(4)) : 0;
+
+        ObservableList<String> row = TableManager.buildData(new String[][]{GUIModel.blockRow(block)}).get(0);
+        if (id < blocks.size())
+            blocks.set(id, row);
+        else
+            blocks.add(row);
+        txs.remove(first, Math.min(first + count, txs.size()));
+        txs.addAll(first, TableManager.buildData(GUIModel.txRows(block)));
+    }
+
+    /**
+     * Remove the rows of the last block and of its transactions
+     *
+     * @param id id of the block
+     */
+    @SuppressWarnings("unchecked")
+    private void hideBlock(int id) {
+        ObservableList<ObservableList<String>> blocks = view.blockChainTable.getItems();
+        ObservableList<ObservableList<String>> txs = view.txTable.getItems();
+        if (id != blocks.size() - 1) {
+            this.refreshTableViews();
+            return;
+        }
+        int count = Integer.parseInt(blocks.remove(id).get(4));
+        txs.remove(Math.max(0, txs.size() - count), txs.size());
+    }
+
+    /**
+     * Apply a change of the blockchain to the table views
+     *
+     * @param event change
+     */
+    private void apply(ChainEvent event) {
+        switch (event.getType()) {
+            case BLOCK_ADDED:
+            case TX_ADDED:
+            case BLOCK_UPDATED:
+            case BLOCK_MINED:
+                this.showBlock(event.getBlock());
+                break;
+            case BLOCK_REMOVED:
+                this.hideBlock(event.getBlockId());
+                break;
+            default:
+                this.refreshTableViews();
+        }
+        this.showBlockState();
+    }
+
+    /**
+     * Show the transactions in the miner's pool against the block threshold of the current blockchain
+     */
+    private void showBlockState() {
+        view.blockState.setText(model.getMinerPoolState() + "/" + model.getBlockThreshold());
+    }
+
     /**
      * Refresh the table views data
      */
@@ -146,4 +281,43 @@ public class GUIController {
         view.blockChainTable.setItems(TableManager.buildData(model.getChainData()));
     }
 
+    /**
+     * Receive the changes of a blockchain and apply them on the JavaFX thread.
+     * The events can refer to versions older than the one shown after a refresh, but they come in order,
+     * so the tables show the last version once they are all applied.
+     * The next event is requested once the previous one is applied, so they do not pile up on the JavaFX thread.
+     */
+    private final class TableUpdater implements Flow.Subscriber<ChainEvent> {
+
+        private Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(ChainEvent event) {
+            Platform.runLater(() -> {
+                // The blockchain could have been reset
+                if (updater == this)
+                    apply(event);
+                subscription.request(1);
+            });
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            Platform.runLater(() -> {
+                if (updater == this)
+                    refreshTableViews();
+            });
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
 }
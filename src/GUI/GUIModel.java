@@ -3,6 +3,7 @@ package GUI;
 import dumbchain.*;
 
 import java.util.List;
+import java.util.concurrent.Flow;
 
 /**
  * Provides a simplify API for Dumbchain communication
@@ -11,21 +12,24 @@ import java.util.List;
 public class GUIModel {
 
     private Dumbchain blockchain;
+    private ParallelProofOfWork miningStrategy;
     private Caretaker careTaker;
     private Miner miner;
+    private ChainEventPublisher events;
 
     public GUIModel() {
         this.resetBlockchain();
     }
 
     /**
-     * Mine a block
+     * Start mining a block in background
      *
      * @param blockId the id block
+     * @return the running job
      */
-    public void mineBlock(int blockId) {
+    public MiningJob mineBlock(int blockId) {
         careTaker.saveState();
-        miner.mineBlock(blockchain.getBlock(blockId));
+        return miner.mineBlockAsync(blockchain.getBlock(blockId));
     }
 
     /**
@@ -34,12 +38,8 @@ public class GUIModel {
      * @return "OK" if is valid, an error message otherwise
      */
     public String validateBlockchain() {
-        try {
-            this.blockchain.validateBlockchain();
-            return "OK";
-        } catch (Exception exception) {
-            return exception.getMessage();
-        }
+        ValidationReport report = this.blockchain.validate();
+        return report.isValid() ? "OK" : report.toString();
     }
 
     /**
@@ -60,10 +60,25 @@ public class GUIModel {
      * Resets the blockchain
      */
     public void resetBlockchain() {
-        this.blockchain = new Dumbchain(new ProofOfWork(3));
+        if (this.events != null)
+            this.events.close();
+        if (this.miningStrategy != null)
+            this.miningStrategy.close();
+        this.miningStrategy = new ParallelProofOfWork(3);
+        this.blockchain = new Dumbchain(this.miningStrategy);
         this.careTaker = new Caretaker(this.blockchain);
         miner = new Miner(this.blockchain);
         miner.mineBlock(blockchain.getLastBlock());
+        this.events = new ChainEventPublisher(this.blockchain);
+    }
+
+    /**
+     * Receive the changes of the blockchain, until it is reset
+     *
+     * @param subscriber subscriber
+     */
+    public void subscribe(Flow.Subscriber<ChainEvent> subscriber) {
+        events.subscribe(subscriber);
     }
 
     /**
@@ -80,18 +95,11 @@ public class GUIModel {
      * Add a transactio through the miner
      *
      * @param txValue tx value
-     * @return True if is the last tx of miner's pool, false otherwise
+     * @return the job mining the new block if it is the last tx of miner's pool, null otherwise
      */
-    public boolean addMinerTX(String txValue) {
-
-        //Check if is the last tx of the miner's pool
-        boolean lastTX = false;
-        if (miner.getPoolCounter() == Dumbchain.BLOCK_THRESHOLD - 1) {
-            lastTX = true;
-        }
+    public MiningJob addMinerTX(String txValue) {
         careTaker.saveState();
-        miner.mine(new MinimalTransaction(txValue));
-        return lastTX;
+        return miner.submit(new MinimalTransaction(txValue));
     }
 
     /**
@@ -109,7 +117,7 @@ public class GUIModel {
      * @return threshold
      */
     public int getBlockThreshold() {
-        return Dumbchain.BLOCK_THRESHOLD;
+        return blockchain.getBlockThreshold();
     }
 
     /**
@@ -134,15 +142,8 @@ public class GUIModel {
 
         int j = 0;
 
-        for (Block b : chain) {
-            data[j] = new String[5];
-            data[j][0] = Integer.toString(b.getId());
-            data[j][1] = b.getHash();
-            data[j][2] = b.getPreviousHash();
-            data[j][3] = Integer.toString(b.getNonce());
-            data[j][4] = Integer.toString(b.getTxCounter());
-            j++;
-        }
+        for (Block b : chain)
+            data[j++] = blockRow(b);
         return data;
     }
 
@@ -162,16 +163,46 @@ public class GUIModel {
 
         int i = 0;
         for (Block b : chain) {
-            for (Tx tx : b.getTxs()) {
-                data[i] = new String[3];
-                data[i][0] = Integer.toString(b.getId());
-                data[i][1] = tx.getHash();
-                data[i][2] = ((MinimalTransaction) tx).getValue();
-                i++;
-            }
+            for (String[] row : txRows(b))
+                data[i++] = row;
         }
 
         return data;
     }
 
+    /**
+     * Parse block data into a table row
+     *
+     * @param b block
+     * @return parsed data
+     */
+    public static String[] blockRow(Block b) {
+        String[] row = new String[5];
+        row[0] = Integer.toString(b.getId());
+        row[1] = b.getHash().toHex();
+        row[2] = b.getPreviousHash().toHex();
+        row[3] = Integer.toString(b.getNonce());
+        row[4] = Integer.toString(b.getTxCounter());
+        return row;
+    }
+
+    /**
+     * Parse the transactions of a block into table rows
+     *
+     * @param b block
+     * @return parsed data
+     */
+    public static String[][] txRows(Block b) {
+        List<Tx> txs = b.getTxs();
+        String[][] rows = new String[txs.size()][];
+        for (int i = 0; i < rows.length; i++) {
+            Tx tx = txs.get(i);
+            rows[i] = new String[3];
+            rows[i][0] = Integer.toString(b.getId());
+            rows[i][1] = tx.getHash().toHex();
+            rows[i][2] = tx instanceof MinimalTransaction ? ((MinimalTransaction) tx).getValue() : tx.toString();
+        }
+        return rows;
+    }
+
 }
@@ -1,6 +1,5 @@
 package GUI;
 
-import dumbchain.Dumbchain;
 import javafx.scene.control.Button;
 import javafx.scene.control.SplitPane;
 import javafx.scene.control.TableView;
@@ -37,6 +36,7 @@ public class GUIView {
     //Status
     public Text chainStatus = new Text();
     public Text blockState = new Text();
+    public Text miningState = new Text();
 
     /**
      * Build the GUI layout
@@ -109,7 +109,6 @@ public class GUIView {
         innerMinerBoxTX.getChildren().addAll(tfTXMin, btnAddTxMine);
 
         HBox innerBlockState = new HBox();
-        blockState.setText("0/" + Dumbchain.BLOCK_THRESHOLD);
         innerBlockState.getChildren().addAll(new Text("Miner's block state: "), blockState);
 
         HBox innerMinerBoxMine = new HBox();
@@ -138,11 +137,15 @@ public class GUIView {
         chainStatus.setText("UNKNOWN");
         validationBox.getChildren().addAll(new Text("Blockchain Integrity : "), chainStatus);
 
+        HBox miningBox = new HBox();
+        miningState.setText("idle");
+        miningBox.getChildren().addAll(new Text("Mining : "), miningState);
+
         HBox opBox = new HBox();
         opBox.setSpacing(10);
         opBox.getChildren().addAll(btnValidate, btnRestore, btnReset);
 
-        statusBox.getChildren().addAll(validationBox, opBox);
+        statusBox.getChildren().addAll(validationBox, miningBox, opBox);
         statusBox.getStyleClass().add("padding-10");
 
         return statusBox;
@@ -0,0 +1,177 @@
+package dumbchain;
+
+/**
+ * Balances and nonces of the accounts, stored as an open addressing table of primitive longs.
+ * Every slot holds the account, its balance, its nonce and 1 if the slot is used, 0 marks an empty slot.
+ * Collisions are resolved by linear probing. Accounts are never removed: an account with no balance and
+ * no nonce is the same as a missing one.
+ * <p>
+ * The table is not thread safe, but a lookup never fails while another thread writes: it reads a single array,
+ * replaced when the table grows, so a reader only has to check that no write happened meanwhile.
+ * <p>
+ * A table can be laid over another one, see {@link #overlay}: the changes are stored in the new table only.
+ */
+public class AccountTable {
+
+    private static final int SLOT = 4;
+    private static final int BALANCE = 1;
+    private static final int NONCE = 2;
+    private static final int USED = 3;
+    // The table grows when it is three quarters full
+    private static final int MAX_LOAD_PERCENT = 75;
+
+    private long[] table;
+    private int size;
+    // Table read for the accounts missing, null if none
+    private final AccountTable base;
+
+    /**
+     * Creates an empty table
+     */
+    public AccountTable() {
+        this(1024);
+    }
+
+    /**
+     * Creates an empty table
+     *
+     * @param expectedSize number of accounts stored without growing the table
+     */
+    public AccountTable(int expectedSize) {
+        this(expectedSize, null);
+    }
+
+    private AccountTable(int expectedSize, AccountTable base) {
+        this.table = new long[(Integer.highestOneBit(Math.max(16, expectedSize * 100 / MAX_LOAD_PERCENT) - 1) << 1) * SLOT];
+        this.base = base;
+    }
+
+    /**
+     * Creates a copy of a table
+     *
+     * @param other table copied
+     */
+    public AccountTable(AccountTable other) {
+        this.table = other.table.clone();
+        this.size = other.size;
+        this.base = other.base;
+    }
+
+    /**
+     * Creates an empty table over another one: the accounts missing are read from it, while the changes are
+     * stored in the new table. The cost depends on the accounts changed, not on the size of the other table,
+     * which must not change while the new one is used.
+     *
+     * @param base table read for the accounts missing
+     * @return new table
+     */
+    public static AccountTable overlay(AccountTable base) {
+        return new AccountTable(16, base);
+    }
+
+    /**
+     * Balance getter
+     *
+     * @param account account
+     * @return balance, 0 if the account is not in the table
+     */
+    public long getBalance(long account) {
+        long[] t = this.table;
+        int offset = find(t, account);
+        if (offset < 0)
+            return base == null ? 0 : base.getBalance(account);
+        return t[offset + BALANCE];
+    }
+
+    /**
+     * Nonce getter
+     *
+     * @param account account
+     * @return number of transfers sent by the account, 0 if the account is not in the table
+     */
+    public long getNonce(long account) {
+        long[] t = this.table;
+        int offset = find(t, account);
+        if (offset < 0)
+            return base == null ? 0 : base.getNonce(account);
+        return t[offset + NONCE];
+    }
+
+    /**
+     * Set the balance and the nonce of an account
+     *
+     * @param account account
+     * @param balance new balance
+     * @param nonce   new nonce
+     */
+    public void put(long account, long balance, long nonce) {
+        int offset = find(table, account);
+        if (offset < 0) {
+            if ((size + 1) * 100L > (table.length / SLOT) * (long) MAX_LOAD_PERCENT)
+                grow();
+            offset = insert(table, account);
+            size++;
+        }
+        table[offset + BALANCE] = balance;
+        table[offset + NONCE] = nonce;
+    }
+
+    /**
+     * Number of accounts in the table, not counting the ones read from the table below
+     *
+     * @return size
+     */
+    public int size() {
+        return this.size;
+    }
+
+    private void grow() {
+        long[] old = this.table;
+        long[] grown = new long[old.length * 2];
+        for (int offset = 0; offset < old.length; offset += SLOT) {
+            if (old[offset + USED] != 0) {
+                int slot = insert(grown, old[offset]);
+                grown[slot + BALANCE] = old[offset + BALANCE];
+                grown[slot + NONCE] = old[offset + NONCE];
+            }
+        }
+        // Published once filled, so the readers never see a partial table
+        this.table = grown;
+    }
+
+    /**
+     * Claim the slot of an account missing from a table
+     *
+     * @return offset of the slot
+     */
+    private static int insert(long[] t, long account) {
+        int mask = t.length / SLOT - 1;
+        int slot = home(account, mask);
+        while (t[slot * SLOT + USED] != 0)
+            slot = (slot + 1) & mask;
+        int offset = slot * SLOT;
+        t[offset] = account;
+        t[offset + USED] = 1;
+        return offset;
+    }
+
+    /**
+     * Offset of the slot of an account
+     *
+     * @return offset, -1 if the account is not in the table
+     */
+    private static int find(long[] t, long account) {
+        int mask = t.length / SLOT - 1;
+        for (int slot = home(account, mask); t[slot * SLOT + USED] != 0; slot = (slot + 1) & mask) {
+            if (t[slot * SLOT] == account)
+                return slot * SLOT;
+        }
+        return -1;
+    }
+
+    private static int home(long account, int mask) {
+        // Spread the small account numbers over the table
+        long h = account * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
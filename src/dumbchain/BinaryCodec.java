@@ -0,0 +1,389 @@
+package dumbchain;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact binary encoding of blocks and transactions.
+ * <p>
+ * A block is written as
+ * {@code [format][id][version][previousHash][merkleRoot][stateRoot][timeStamp][txCounter][bits][nonce][hash][count][tx...]},
+ * where the state root is only written for the headers holding it, the hashes take 32 bytes, the counts are varints and every transaction is
+ * {@code [type tag][length][payload]}. The payload of a transaction is written by the {@link TxCodec} registered
+ * for its type, so new transaction types can be stored without changing the format.
+ */
+public final class BinaryCodec {
+
+    // Version of the block encoding, written as first byte
+    public static final int FORMAT = 1;
+    // Type tag of MinimalTransaction
+    public static final int MINIMAL_TX = 1;
+    // Type tag of BinaryTransaction
+    public static final int BINARY_TX = 2;
+    // Type tag of SignedTransaction
+    public static final int SIGNED_TX = 3;
+
+    private static final Map<Class<?>, Registration<?>> BY_TYPE = new ConcurrentHashMap<>();
+    private static final Map<Integer, Registration<?>> BY_TAG = new ConcurrentHashMap<>();
+
+    static {
+        register(MINIMAL_TX, MinimalTransaction.class, new MinimalTxCodec());
+        register(BINARY_TX, BinaryTransaction.class, new BinaryTxCodec());
+        register(SIGNED_TX, SignedTransaction.class, new SignedTxCodec());
+    }
+
+    private BinaryCodec() {
+    }
+
+    /**
+     * Register the codec of a transaction type
+     *
+     * @param tag   tag written before the transactions of the type, unique
+     * @param type  transaction type
+     * @param codec codec
+     * @param <T>   transaction type
+     */
+    public static synchronized <T extends Tx> void register(int tag, Class<T> type, TxCodec<T> codec) {
+        if (tag < 0)
+            throw new RuntimeException("Invalid type tag " + tag);
+        Registration<?> registered = BY_TAG.get(tag);
+        if (registered != null && registered.type != type)
+            throw new RuntimeException("Type tag " + tag + " already used by " + registered.type.getName());
+        Registration<T> registration = new Registration<>(tag, type, codec);
+        BY_TAG.put(tag, registration);
+        BY_TYPE.put(type, registration);
+    }
+
+    /**
+     * Size of the encoding of a block
+     *
+     * @param block block
+     * @return bytes
+     */
+    public static int encodedSize(Block block) {
+        List<Tx> txs = block.getTxs();
+        int bytes = 1 + varintSize(block.getId()) + varintSize(block.getVersion()) + Hash.BYTES * 3
+                + 8 + varintSize(block.getTxCounter()) + 4 + 4 + varintSize(txs.size());
+        if (block.getVersion() >= BlockHeader.STATE_ROOT_VERSION)
+            bytes += Hash.BYTES;
+        for (Tx tx : txs)
+            bytes += encodedSize(tx);
+        return bytes;
+    }
+
+    /**
+     * Encode a block into a new buffer
+     *
+     * @param block block
+     * @return encoding, ready to be read
+     */
+    public static ByteBuffer encode(Block block) {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize(block));
+        encode(block, buffer);
+        return buffer.flip();
+    }
+
+    /**
+     * Write a block
+     *
+     * @param block block
+     * @param dst   destination, with at least {@link #encodedSize(Block)} bytes remaining
+     */
+    public static void encode(Block block, ByteBuffer dst) {
+        dst.put((byte) FORMAT);
+        putVarint(dst, block.getId());
+        putVarint(dst, block.getVersion());
+        block.getPreviousHash().writeTo(dst);
+        block.getMerkleRoot().writeTo(dst);
+        // Only the headers committing to the state hold its root
+        if (block.getVersion() >= BlockHeader.STATE_ROOT_VERSION)
+            block.getStateRoot().writeTo(dst);
+        dst.putLong(block.getTimeStamp());
+        putVarint(dst, block.getTxCounter());
+        dst.putInt(block.getBits()).putInt(block.getNonce());
+        block.getHash().writeTo(dst);
+        List<Tx> txs = block.getTxs();
+        putVarint(dst, txs.size());
+        for (Tx tx : txs)
+            encode(tx, dst);
+    }
+
+    /**
+     * Read a block
+     *
+     * @param src source, positioned on the encoding
+     * @return block
+     */
+    public static Block decodeBlock(ByteBuffer src) {
+        int format = src.get();
+        if (format != FORMAT)
+            throw new RuntimeException("Unsupported block format " + format);
+        int id = getVarint(src);
+        int version = getVarint(src);
+        Hash previousHash = Hash.read(src);
+        Hash merkleRoot = Hash.read(src);
+        Hash stateRoot = version >= BlockHeader.STATE_ROOT_VERSION ? Hash.read(src) : Hash.ZERO;
+        long timeStamp = src.getLong();
+        int txCounter = getVarint(src);
+        int bits = src.getInt();
+        int nonce = src.getInt();
+        Hash hash = Hash.read(src);
+        // Every transaction takes at least one byte
+        int count = getLength(src);
+        List<Tx> txs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            txs.add(decodeTx(src));
+        return new Block(id, version, previousHash, merkleRoot, stateRoot, timeStamp, txCounter, bits, nonce, hash,
+                txs);
+    }
+
+    /**
+     * Size of the encoding of a transaction, tag and length included
+     *
+     * @param tx transaction
+     * @return bytes
+     */
+    public static int encodedSize(Tx tx) {
+        Registration<?> registration = registration(tx);
+        int payload = registration.size(tx);
+        return varintSize(registration.tag) + varintSize(payload) + payload;
+    }
+
+    /**
+     * Write a transaction
+     *
+     * @param tx  transaction
+     * @param dst destination, with at least {@link #encodedSize(Tx)} bytes remaining
+     */
+    public static void encode(Tx tx, ByteBuffer dst) {
+        Registration<?> registration = registration(tx);
+        putVarint(dst, registration.tag);
+        putVarint(dst, registration.size(tx));
+        registration.encode(tx, dst);
+    }
+
+    /**
+     * Read a transaction
+     *
+     * @param src source, positioned on the encoding
+     * @return transaction
+     */
+    public static Tx decodeTx(ByteBuffer src) {
+        int tag = getVarint(src);
+        Registration<?> registration = BY_TAG.get(tag);
+        if (registration == null)
+            throw new RuntimeException("Unknown transaction type tag " + tag);
+        int length = getLength(src);
+        ByteBuffer payload = src.slice();
+        payload.limit(length);
+        src.position(src.position() + length);
+        return registration.codec.decode(payload);
+    }
+
+    private static Registration<?> registration(Tx tx) {
+        Registration<?> registration = BY_TYPE.get(tx.getClass());
+        if (registration == null)
+            throw new RuntimeException("Unsupported transaction type " + tx.getClass().getName());
+        return registration;
+    }
+
+    /**
+     * Size of an unsigned varint
+     *
+     * @param value value
+     * @return bytes
+     */
+    static int varintSize(int value) {
+        int bytes = 1;
+        while ((value & ~0x7f) != 0) {
+            value >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+
+    /**
+     * Write an unsigned varint, 7 bits per byte, least significant group first
+     *
+     * @param dst   destination
+     * @param value value
+     */
+    static void putVarint(ByteBuffer dst, int value) {
+        while ((value & ~0x7f) != 0) {
+            dst.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        dst.put((byte) value);
+    }
+
+    /**
+     * Read an unsigned varint
+     *
+     * @param src source
+     * @return value
+     */
+    static int getVarint(ByteBuffer src) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = src.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0)
+                return value;
+        }
+        throw new RuntimeException("Invalid varint");
+    }
+
+    /**
+     * Read the length of the data following it, checking that the source holds that many bytes
+     *
+     * @param src source
+     * @return length
+     */
+    static int getLength(ByteBuffer src) {
+        int length = getVarint(src);
+        if (length < 0 || length > src.remaining())
+            throw new RuntimeException("Invalid length " + length);
+        return length;
+    }
+
+    /**
+     * Codec of a registered transaction type
+     */
+    private static final class Registration<T extends Tx> {
+        private final int tag;
+        private final Class<T> type;
+        private final TxCodec<T> codec;
+
+        private Registration(int tag, Class<T> type, TxCodec<T> codec) {
+            this.tag = tag;
+            this.type = type;
+            this.codec = codec;
+        }
+
+        private int size(Tx tx) {
+            return codec.encodedSize(type.cast(tx));
+        }
+
+        private void encode(Tx tx, ByteBuffer dst) {
+            codec.encode(type.cast(tx), dst);
+        }
+    }
+
+    /**
+     * MinimalTransaction codec: the UTF-8 encoded value, the hash is calculated again when decoded
+     */
+    private static final class MinimalTxCodec implements TxCodec<MinimalTransaction> {
+
+        @Override
+        public int encodedSize(MinimalTransaction tx) {
+            return utf8Length(tx.getValue());
+        }
+
+        @Override
+        public void encode(MinimalTransaction tx, ByteBuffer dst) {
+            putUtf8(dst, tx.getValue());
+        }
+
+        @Override
+        public MinimalTransaction decode(ByteBuffer src) {
+            return new MinimalTransaction(StandardCharsets.UTF_8.decode(src).toString());
+        }
+    }
+
+    /**
+     * BinaryTransaction codec: the payload as it is. The decoded transaction views the source, without copying it.
+     */
+    private static final class BinaryTxCodec implements TxCodec<BinaryTransaction> {
+
+        @Override
+        public int encodedSize(BinaryTransaction tx) {
+            return tx.size();
+        }
+
+        @Override
+        public void encode(BinaryTransaction tx, ByteBuffer dst) {
+            dst.put(tx.getPayload());
+        }
+
+        @Override
+        public BinaryTransaction decode(ByteBuffer src) {
+            return new BinaryTransaction(src);
+        }
+    }
+
+    /**
+     * SignedTransaction codec: scheme, key, payload and signature; the signature is not verified when decoded
+     */
+    private static final class SignedTxCodec implements TxCodec<SignedTransaction> {
+
+        @Override
+        public int encodedSize(SignedTransaction tx) {
+            return tx.encodedSize();
+        }
+
+        @Override
+        public void encode(SignedTransaction tx, ByteBuffer dst) {
+            tx.writeTo(dst);
+        }
+
+        @Override
+        public SignedTransaction decode(ByteBuffer src) {
+            return SignedTransaction.read(src);
+        }
+    }
+
+    /**
+     * Length of the UTF-8 encoding of a string, unpaired surrogates are encoded as '?' like String.getBytes
+     *
+     * @param s string
+     * @return bytes
+     */
+    static int utf8Length(String s) {
+        int bytes = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                bytes++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Write the UTF-8 encoding of a string without copying it into an array
+     *
+     * @param dst destination
+     * @param s   string
+     */
+    static void putUtf8(ByteBuffer dst, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                dst.put((byte) c);
+            } else if (c < 0x800) {
+                dst.put((byte) (0xc0 | c >> 6)).put((byte) (0x80 | c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                dst.put((byte) (0xf0 | cp >> 18)).put((byte) (0x80 | cp >> 12 & 0x3f))
+                        .put((byte) (0x80 | cp >> 6 & 0x3f)).put((byte) (0x80 | cp & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                dst.put((byte) '?');
+            } else {
+                dst.put((byte) (0xe0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3f)).put((byte) (0x80 | c & 0x3f));
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package dumbchain;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Transaction carrying an opaque binary payload.
+ * <p>
+ * The payload is not copied: the transaction keeps a read-only view of the buffer it is given, so the caller
+ * must not change the bytes afterwards. A transaction decoded by {@link BinaryCodec} views the encoded block.
+ * The hash is calculated on first use and cached.
+ */
+public final class BinaryTransaction implements Tx {
+
+    private final ByteBuffer payload;
+    private volatile Hash hash;
+
+    /**
+     * Creates a new transaction over an array, without copying it
+     *
+     * @param payload payload
+     */
+    public BinaryTransaction(byte[] payload) {
+        this(ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * Creates a new transaction over the remaining bytes of a buffer, without copying them.
+     * The position of the buffer is not moved.
+     *
+     * @param payload payload
+     */
+    public BinaryTransaction(ByteBuffer payload) {
+        if (payload == null)
+            throw new RuntimeException("Invalid payload (null)");
+        this.payload = payload.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Calculate the hash of the payload
+     *
+     * @return hash
+     */
+    @Override
+    public Hash calculateHash() {
+        return Utils.sha256(payload.duplicate());
+    }
+
+    /**
+     * Getter of the hash, calculated on first use
+     *
+     * @return hash
+     */
+    @Override
+    public Hash getHash() {
+        Hash h = this.hash;
+        if (h == null) {
+            h = this.calculateHash();
+            this.hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Getter of the payload
+     *
+     * @return read-only view of the payload, positioned at its start
+     */
+    public ByteBuffer getPayload() {
+        return this.payload.duplicate();
+    }
+
+    /**
+     * Getter of the payload size
+     *
+     * @return bytes
+     */
+    public int size() {
+        return this.payload.remaining();
+    }
+
+    @Override
+    public String toString() {
+        return "BinaryTransaction[" + this.size() + " bytes]";
+    }
+}
@@ -1,41 +1,82 @@
 package dumbchain;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * Implements the block used to store data into the blockchain.
+ * <p>
+ * A sealed block can no longer be modified. Blocks are sealed when a snapshot of the chain shares them:
+ * every block of a chain holds the seal of the chain, which is closed when a snapshot is taken,
+ * so sealing all the blocks takes constant time. A copy of a sealed block can be modified.
+ * The copy shares the transactions with the original, so adding transactions to a copy of the last block
+ * does not depend on the number of transactions already in it.
  */
 
 public class Block {
 
     private int id;              // Id of the block
-    private String hash;         // Hash of the block
-    private String previousHash;  // The hash of the previous block on the chain
-    private List<Tx> transactions = new ArrayList<>(); // Set of transaction stored in the block
+    private int version;         // Format of the block header
+    private Hash hash;           // Hash of the block
+    private Hash previousHash;   // The hash of the previous block on the chain
+    private List<Tx> transactions = new TxVector(PersistentVector.empty()); // Set of transaction stored in the block
     private long timeStamp;     // The timeStamp of the block creation
+    private int bits;           // Compact form of the target the block must meet, 0 if not set
     private int nonce;          // A data used to alter the state of the object for mining purpose
     private int txCounter;      // The number of TX stored
-    private String merkleRoot;  // The root of the Merkle Tree
+    private Hash merkleRoot;    // The root of the Merkle Tree
+    private Hash stateRoot;     // The root of the account state after the block
+    private transient MerkleAccumulator merkle; // Right edge of the Merkle Tree, rebuilt when missing
+    private transient Seal seal = new Seal();   // Shared by the blocks sealed together
 
-    Block(int id, String previousHash, int nonce, long timeStamp) {
+    Block(int id, Hash previousHash, Hash stateRoot, int nonce, long timeStamp, int bits) {
         this.id = id;
+        this.version = BlockHeader.VERSION;
         this.previousHash = previousHash;
+        this.stateRoot = stateRoot;
         this.timeStamp = timeStamp;
-        this.merkleRoot = "0";
+        this.nonce = nonce;
+        this.bits = bits;
+        this.merkleRoot = Hash.ZERO;
         this.txCounter = 0;
+        this.merkle = new MerkleAccumulator();
         this.hash = this.calculateHash();
     }
 
+    Block(int id, int version, Hash previousHash, Hash merkleRoot, Hash stateRoot, long timeStamp, int txCounter,
+          int bits, int nonce, Hash hash, List<Tx> transactions) {
+        this.id = id;
+        this.version = version;
+        this.previousHash = previousHash;
+        this.merkleRoot = merkleRoot;
+        this.stateRoot = stateRoot;
+        this.timeStamp = timeStamp;
+        this.txCounter = txCounter;
+        this.bits = bits;
+        this.nonce = nonce;
+        this.hash = hash;
+        this.transactions = transactions;
+    }
+
     Block(Block b) {
         this.id = b.getId();
+        this.version = b.getVersion();
         this.previousHash = b.getPreviousHash();
         this.timeStamp = b.getTimeStamp();
         this.merkleRoot = b.getMerkleRoot();
+        this.stateRoot = b.getStateRoot();
         this.txCounter = b.getTxCounter();
         this.hash = b.getHash();
         this.nonce = b.getNonce();
-        this.transactions = new ArrayList<>(b.getTxs());
+        this.bits = b.getBits();
+        this.transactions = b.transactions instanceof TxVector
+                ? new TxVector(((TxVector) b.transactions).txs)
+                : new TxVector(PersistentVector.of(b.transactions));
+        if (b.merkle != null)
+            this.merkle = new MerkleAccumulator(b.merkle);
     }
 
     /**
@@ -44,15 +85,38 @@ public class Block {
      * @param tx transaction.
      */
     public void addTx(Tx tx) {
+        this.checkUnsealed();
         if (tx == null)
             throw new RuntimeException("Invalid TX (null)");
         //add the transaction
         transactions.add(tx);
+        merkle().add(tx.getHash());
+        //update the counter
+        this.txCounter++;
         //update the hash-dependent values of the block
+        this.updateMerkleTreeRoot();
         this.updateHash();
+    }
+
+    /**
+     * Add TXs in the block. The merkle root and the hash are updated once, after the last one.
+     *
+     * @param txs transactions, in order
+     */
+    public void addTxs(Collection<? extends Tx> txs) {
+        this.checkUnsealed();
+        for (Tx tx : txs) {
+            if (tx == null)
+                throw new RuntimeException("Invalid TX (null)");
+        }
+        MerkleAccumulator accumulator = merkle();
+        for (Tx tx : txs) {
+            transactions.add(tx);
+            accumulator.add(tx.getHash());
+        }
+        this.txCounter += txs.size();
         this.updateMerkleTreeRoot();
-        //update the counter
-        this.txCounter++;
+        this.updateHash();
     }
 
     /**
@@ -61,9 +125,41 @@ public class Block {
      * @return True if is valid, false otherwise.
      */
     public boolean validateTransactions() {
-        List<String> tree = merkleTree();
-        String root = tree.get(tree.size() - 1);
-        return root.equals(this.getMerkleRoot());
+        return validateTransactions(MerkleTreeBuilder.SEQUENTIAL);
+    }
+
+    /**
+     * Validate the transaction stored in the block, rebuilding the merkle tree with a given builder.
+     *
+     * @param builder merkle tree builder
+     * @return True if is valid, false otherwise.
+     */
+    public boolean validateTransactions(MerkleTreeBuilder builder) {
+        return builder.root(this.transactions).equals(this.getMerkleRoot());
+    }
+
+    /**
+     * Build the inclusion proof of a transaction of the block.
+     *
+     * @param txHash hash of the transaction
+     * @return proof, verifiable against the merkle root and the TX counter with {@link MerkleProof#verify}
+     */
+    public MerkleProof proveTx(Hash txHash) {
+        for (int i = 0; i < transactions.size(); i++) {
+            if (transactions.get(i).getHash().equals(txHash))
+                return proveTx(i);
+        }
+        throw new RuntimeException("TX " + txHash + " not found in block " + this.id);
+    }
+
+    /**
+     * Build the inclusion proof of the transaction at a given position.
+     *
+     * @param index position of the transaction
+     * @return proof
+     */
+    public MerkleProof proveTx(int index) {
+        return MerkleTreeBuilder.SEQUENTIAL.prove(this.transactions, index);
     }
 
     /**
@@ -71,9 +167,18 @@ public class Block {
      *
      * @return the hash of the block
      */
-    public String calculateHash() {
-        // The data used for computer the hash are basically the instance data (attributes) of the object itself
-        return Utils.SHA256(previousHash + timeStamp + nonce + transactions + txCounter + merkleRoot);
+    public Hash calculateHash() {
+        // The hash covers the binary header, the transactions are committed through the merkle root
+        return header().hash();
+    }
+
+    /**
+     * Build the binary header of the block.
+     *
+     * @return header
+     */
+    public BlockHeader header() {
+        return BlockHeader.of(this);
     }
 
     /**
@@ -81,7 +186,7 @@ public class Block {
      *
      * @return merkle tree
      */
-    public List<String> merkleTree() {
+    public List<Hash> merkleTree() {
         return Utils.createMerkleTree(this.transactions);
     }
 
@@ -89,14 +194,30 @@ public class Block {
      * Update the merkle tree root.
      */
     public void updateMerkleTreeRoot() {
-        List<String> treeList = merkleTree();
-        this.merkleRoot = treeList.get(treeList.size() - 1);
+        this.checkUnsealed();
+        this.merkleRoot = merkle().root();
+    }
+
+    /**
+     * Getter of the incremental merkle tree, rebuilt from the transactions if missing
+     *
+     * @return merkle accumulator
+     */
+    private MerkleAccumulator merkle() {
+        if (this.merkle == null) {
+            MerkleAccumulator accumulator = new MerkleAccumulator();
+            for (Tx tx : transactions)
+                accumulator.add(tx.getHash());
+            this.merkle = accumulator;
+        }
+        return this.merkle;
     }
 
     /**
      * Update the hash of the block
      */
     public void updateHash() {
+        this.checkUnsealed();
         this.hash = this.calculateHash();
     }
 
@@ -105,7 +226,7 @@ public class Block {
      *
      * @return hash
      */
-    public String getHash() {
+    public Hash getHash() {
         return this.hash;
     }
 
@@ -114,7 +235,7 @@ public class Block {
      *
      * @return previous hash
      */
-    public String getPreviousHash() {
+    public Hash getPreviousHash() {
         return this.previousHash;
     }
 
@@ -123,18 +244,19 @@ public class Block {
      *
      * @param hash new previous hash value
      */
-    public void setPreviousHash(String hash) {
+    public void setPreviousHash(Hash hash) {
+        this.checkUnsealed();
         this.previousHash = hash;
     }
 
     /**
      * TXs getter
      *
-     * @return transactions
+     * @return transactions, read only if the block is sealed
      */
 
     public List<Tx> getTxs() {
-        return this.transactions;
+        return this.isSealed() ? Collections.unmodifiableList(this.transactions) : this.transactions;
     }
 
     /**
@@ -142,7 +264,7 @@ public class Block {
      *
      * @return merkle root
      */
-    public String getMerkleRoot() {
+    public Hash getMerkleRoot() {
         return this.merkleRoot;
     }
 
@@ -151,10 +273,30 @@ public class Block {
      *
      * @param root new merkle root value
      */
-    public void setMerkleRoot(String root) {
+    public void setMerkleRoot(Hash root) {
+        this.checkUnsealed();
         this.merkleRoot = root;
     }
 
+    /**
+     * State root getter
+     *
+     * @return root of the account state after the block, see {@link StateEngine}
+     */
+    public Hash getStateRoot() {
+        return this.stateRoot;
+    }
+
+    /**
+     * State root setter
+     *
+     * @param root new state root value
+     */
+    public void setStateRoot(Hash root) {
+        this.checkUnsealed();
+        this.stateRoot = root;
+    }
+
     /**
      * Time stamp getter
      *
@@ -170,6 +312,7 @@ public class Block {
      * @param timeStamp new timeStamp value
      */
     public void setTimeStamp(long timeStamp) {
+        this.checkUnsealed();
         this.timeStamp = timeStamp;
     }
 
@@ -191,15 +334,53 @@ public class Block {
         return this.id;
     }
 
+    /**
+     * Version getter
+     *
+     * @return header version
+     */
+    public int getVersion() {
+        return this.version;
+    }
+
     /**
      * Id setter
      *
      * @param id new id value
      */
     public void setId(int id) {
+        this.checkUnsealed();
         this.id = id;
     }
 
+    /**
+     * Bits getter
+     *
+     * @return compact target, 0 if not set
+     */
+    public int getBits() {
+        return this.bits;
+    }
+
+    /**
+     * Bits setter
+     *
+     * @param bits new compact target
+     */
+    public void setBits(int bits) {
+        this.checkUnsealed();
+        this.bits = bits;
+    }
+
+    /**
+     * Target getter
+     *
+     * @return the target stored in the block, null if not set
+     */
+    public Target getTarget() {
+        return this.bits == 0 ? null : Target.fromCompact(this.bits);
+    }
+
     /**
      * Nonce getter
      *
@@ -215,6 +396,7 @@ public class Block {
      * @param newNonce new nonce value
      */
     public void setNonce(int newNonce) {
+        this.checkUnsealed();
         this.nonce = newNonce;
     }
 
@@ -224,7 +406,146 @@ public class Block {
      * @param txs new tx list
      */
     public void setTransactions(List<Tx> txs) {
+        this.checkUnsealed();
         this.transactions = txs;
+        this.merkle = null;
+    }
+
+    /**
+     * Replace the transactions of the block, updating counter, merkle root and hash.
+     *
+     * @param txs     new tx list
+     * @param builder merkle tree builder used to compute the root
+     */
+    public void setTransactions(List<Tx> txs, MerkleTreeBuilder builder) {
+        this.setTransactions(txs);
+        this.txCounter = txs.size();
+        this.merkleRoot = builder.root(txs);
+        this.updateHash();
+    }
+
+    /**
+     * Bring the block back to an earlier state: drop the transactions added after it and restore the header.
+     *
+     * @param txCount    number of transactions kept
+     * @param merkleRoot merkle root of the earlier state
+     * @param bits       bits of the earlier state
+     * @param nonce      nonce of the earlier state
+     * @param hash       hash of the earlier state
+     */
+    void rollback(int txCount, Hash merkleRoot, int bits, int nonce, Hash hash) {
+        this.checkUnsealed();
+        if (txCount < this.transactions.size()) {
+            this.transactions.subList(txCount, this.transactions.size()).clear();
+            this.merkle = null;
+        }
+        this.txCounter = txCount;
+        this.merkleRoot = merkleRoot;
+        this.bits = bits;
+        this.nonce = nonce;
+        this.hash = hash;
+    }
+
+    /**
+     * Check if the block can be modified
+     *
+     * @return true if the block is sealed
+     */
+    public boolean isSealed() {
+        return this.seal.isClosed();
+    }
+
+    /**
+     * Seal the block
+     */
+    public void seal() {
+        this.seal = Seal.CLOSED;
+    }
+
+    /**
+     * Make the block share a seal, so that it is sealed with the other blocks holding it
+     *
+     * @param seal seal
+     */
+    void setSeal(Seal seal) {
+        this.checkUnsealed();
+        this.seal = seal;
+    }
+
+    private void checkUnsealed() {
+        if (this.isSealed())
+            throw new RuntimeException("Block " + this.id + " is sealed");
+    }
+
+    /**
+     * Seal shared by a group of blocks
+     */
+    static final class Seal {
+
+        // Seal of the blocks sealed on their own
+        static final Seal CLOSED = new Seal();
+
+        static {
+            CLOSED.close();
+        }
+
+        private volatile boolean closed;
+
+        /**
+         * Seal every block holding the seal
+         */
+        void close() {
+            this.closed = true;
+        }
+
+        /**
+         * Closed getter
+         *
+         * @return true if the blocks holding the seal are sealed
+         */
+        boolean isClosed() {
+            return this.closed;
+        }
+    }
+
+    /**
+     * Transactions of a block, stored in a persistent vector shared by the copies of the block.
+     * Only appending and dropping the last transactions are supported.
+     */
+    private static final class TxVector extends AbstractList<Tx> implements RandomAccess {
+
+        private PersistentVector<Tx> txs;
+
+        TxVector(PersistentVector<Tx> txs) {
+            this.txs = txs;
+        }
+
+        @Override
+        public Tx get(int index) {
+            return txs.get(index);
+        }
+
+        @Override
+        public int size() {
+            return txs.size();
+        }
+
+        @Override
+        public void add(int index, Tx tx) {
+            if (index != txs.size())
+                throw new UnsupportedOperationException("TXs can only be added at the end");
+            txs = txs.append(tx);
+            modCount++;
+        }
+
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            if (toIndex != txs.size())
+                throw new UnsupportedOperationException("Only the last TXs can be removed");
+            while (txs.size() > fromIndex)
+                txs = txs.pop();
+            modCount++;
+        }
     }
 
 }
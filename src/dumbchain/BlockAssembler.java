@@ -0,0 +1,211 @@
+package dumbchain;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Concurrent ingestion of transactions.
+ * <p>
+ * Any number of threads submit transactions to a lock-free queue, a single assembler thread drains it
+ * and adds the transactions to the tip of the chain in batches, so the chain is changed once per batch
+ * instead of once per transaction. The readers of the chain are not blocked: every batch is published
+ * as a new version of the tip block. When the chain refuses a batch, its transactions are added one at a time
+ * and the ones refused are reported by {@link #drain()}.
+ */
+public class BlockAssembler implements Closeable {
+
+    // Default maximum number of transactions added at once
+    public static final int DEFAULT_BATCH = 1024;
+
+    private final Dumbchain blockchain;
+    private final int batchSize;
+    private final ConcurrentLinkedQueue<Tx> queue = new ConcurrentLinkedQueue<>();
+    private final LongAdder submitted = new LongAdder();
+    private final Thread assembler;
+    // Number of transactions taken from the queue, added or failed
+    private volatile long processed;
+    // Transactions refused by the chain, reported by drain
+    private final ConcurrentLinkedQueue<Rejection> rejected = new ConcurrentLinkedQueue<>();
+    // True while the assembler waits for new transactions
+    private volatile boolean parked;
+    private volatile boolean closed;
+
+    /**
+     * Creates a new assembler and starts its thread
+     *
+     * @param blockchain blockchain
+     */
+    public BlockAssembler(Dumbchain blockchain) {
+        this(blockchain, DEFAULT_BATCH);
+    }
+
+    /**
+     * Creates a new assembler and starts its thread
+     *
+     * @param blockchain blockchain
+     * @param batchSize  maximum number of transactions added at once
+     */
+    public BlockAssembler(Dumbchain blockchain, int batchSize) {
+        if (batchSize < 1)
+            throw new RuntimeException("Invalid batch size " + batchSize);
+        this.blockchain = blockchain;
+        this.batchSize = batchSize;
+        this.assembler = new Thread(this::run, "block-assembler");
+        this.assembler.setDaemon(true);
+        this.assembler.start();
+    }
+
+    /**
+     * Queue a transaction. The call does not wait for the transaction to be added.
+     *
+     * @param tx tx
+     */
+    public void submit(Tx tx) {
+        if (tx == null)
+            throw new RuntimeException("Invalid TX (null)");
+        if (closed)
+            throw new RuntimeException("The assembler is closed");
+        submitted.increment();
+        queue.offer(tx);
+        // The assembler may have stopped after the check: take the transaction back if it is still queued
+        if (closed && queue.remove(tx)) {
+            submitted.decrement();
+            throw new RuntimeException("The assembler is closed");
+        }
+        if (parked)
+            LockSupport.unpark(assembler);
+    }
+
+    /**
+     * Wait until the transactions submitted before the call are added to the chain or refused
+     *
+     * @return transactions refused by the chain since the last call, with the error of each
+     */
+    public List<Rejection> drain() {
+        long target = submitted.sum();
+        while (processed < target) {
+            if (!assembler.isAlive())
+                break;
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        return this.takeRejected();
+    }
+
+    /**
+     * Getter of the queue size
+     *
+     * @return number of transactions waiting to be added
+     */
+    public int getPending() {
+        return queue.size();
+    }
+
+    /**
+     * Add the queued transactions and stop the assembler thread.
+     * If some transactions were refused and not reported by {@link #drain()}, the first error is thrown.
+     */
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        LockSupport.unpark(assembler);
+        try {
+            assembler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Rejection> refused = this.takeRejected();
+        if (!refused.isEmpty())
+            throw new RuntimeException(refused.size() + " TXs refused by the chain", refused.get(0).getError());
+    }
+
+    private List<Rejection> takeRejected() {
+        List<Rejection> taken = new ArrayList<>();
+        Rejection rejection;
+        while ((rejection = rejected.poll()) != null)
+            taken.add(rejection);
+        return taken.isEmpty() ? Collections.emptyList() : taken;
+    }
+
+    private void run() {
+        List<Tx> batch = new ArrayList<>(batchSize);
+        while (true) {
+            Tx tx;
+            while (batch.size() < batchSize && (tx = queue.poll()) != null)
+                batch.add(tx);
+            if (!batch.isEmpty()) {
+                try {
+                    blockchain.addTxs(batch);
+                } catch (RuntimeException e) {
+                    // The batch is refused as a whole: add the transactions one at a time to find the bad ones
+                    for (Tx t : batch) {
+                        try {
+                            blockchain.addTx(t);
+                        } catch (RuntimeException error) {
+                            rejected.add(new Rejection(t, error));
+                        }
+                    }
+                }
+                processed += batch.size();
+                batch.clear();
+                continue;
+            }
+            if (closed && queue.isEmpty())
+                return;
+            parked = true;
+            // A producer may have offered before seeing the flag
+            if (queue.isEmpty() && !closed)
+                LockSupport.park(this);
+            parked = false;
+        }
+    }
+
+    /**
+     * Transaction refused by the chain
+     */
+    public static class Rejection {
+        private final Tx tx;
+        private final RuntimeException error;
+
+        /**
+         * Creates a new rejection
+         *
+         * @param tx    transaction refused
+         * @param error error thrown by the chain
+         */
+        Rejection(Tx tx, RuntimeException error) {
+            this.tx = tx;
+            this.error = error;
+        }
+
+        /**
+         * TX getter
+         *
+         * @return transaction refused
+         */
+        public Tx getTx() {
+            return this.tx;
+        }
+
+        /**
+         * Error getter
+         *
+         * @return error thrown by the chain
+         */
+        public RuntimeException getError() {
+            return this.error;
+        }
+
+        @Override
+        public String toString() {
+            return this.tx.getHash() + ": " + this.error.getMessage();
+        }
+    }
+}
@@ -8,9 +8,11 @@ import java.util.Date;
 public class BlockBuilder {
 
     private int id;                     // block id
-    private String previousHash = "0";  // hash of the previous block in the chain
+    private Hash previousHash = Hash.ZERO; // hash of the previous block in the chain
+    private Hash stateRoot = Hash.ZERO;    // root of the account state after the block
     private int nonce = 0;              // nonce - default set to 0
     private long timeStamp = new Date().getTime();
+    private int bits = 0;               // compact target - default not set
 
     /**
      * Set the block id
@@ -36,10 +38,19 @@ public class BlockBuilder {
      *
      * @param previousHash previous hash
      */
-    public void previousHash(String previousHash) {
+    public void previousHash(Hash previousHash) {
         this.previousHash = previousHash;
     }
 
+    /**
+     * Setter for stateRoot.
+     *
+     * @param stateRoot root of the account state after the block
+     */
+    public void stateRoot(Hash stateRoot) {
+        this.stateRoot = stateRoot;
+    }
+
     /**
      * Setter for nonce.
      *
@@ -58,13 +69,22 @@ public class BlockBuilder {
         this.timeStamp = timeStamp;
     }
 
+    /**
+     * Setter for the target.
+     *
+     * @param target target the block must meet
+     */
+    public void target(Target target) {
+        this.bits = target.toCompact();
+    }
+
     /**
      * Build a new block based of the blockbuilder attributes.
      *
      * @return block created
      */
     public Block build() {
-        return new Block(this.id, this.previousHash, this.nonce, this.timeStamp);
+        return new Block(this.id, this.previousHash, this.stateRoot, this.nonce, this.timeStamp, this.bits);
     }
 
 }
@@ -0,0 +1,157 @@
+package dumbchain;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Canonical binary header of a block. The hash of a block is the SHA-256 of its header.
+ * <p>
+ * Layout (big endian):
+ * <pre>
+ * version    4 bytes
+ * prevHash  32 bytes
+ * merkleRoot 32 bytes
+ * stateRoot  32 bytes (from version 3)
+ * timeStamp  8 bytes
+ * txCount    4 bytes
+ * bits       4 bytes (from version 2)
+ * nonce      4 bytes
+ * </pre>
+ * The nonce is the last field, so the hash state of everything before it is the same for every mining attempt.
+ * The headers of the earlier versions keep their layout, so the hashes of the blocks stored before do not change.
+ */
+public final class BlockHeader {
+
+    // Current header format
+    public static final int VERSION = 3;
+    // First format storing the target
+    public static final int BITS_VERSION = 2;
+    // First format committing to the state root
+    public static final int STATE_ROOT_VERSION = 3;
+    // Size of the header in bytes
+    public static final int SIZE = 4 + Hash.BYTES * 3 + 8 + 4 + 4 + 4;
+
+    private final byte[] bytes;
+
+    private BlockHeader(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Creates a new header
+     *
+     * @param version      header version
+     * @param previousHash hash of the previous block
+     * @param merkleRoot   merkle root of the transactions
+     * @param stateRoot    root of the account state, ignored before {@link #STATE_ROOT_VERSION}
+     * @param timeStamp    time stamp
+     * @param txCount      number of transactions
+     * @param bits         compact target, ignored before {@link #BITS_VERSION}
+     * @param nonce        nonce
+     */
+    public BlockHeader(int version, Hash previousHash, Hash merkleRoot, Hash stateRoot, long timeStamp, int txCount,
+                       int bits, int nonce) {
+        this(new byte[size(version)]);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.putInt(version);
+        previousHash.writeTo(buffer);
+        merkleRoot.writeTo(buffer);
+        if (version >= STATE_ROOT_VERSION)
+            stateRoot.writeTo(buffer);
+        buffer.putLong(timeStamp).putInt(txCount);
+        if (version >= BITS_VERSION)
+            buffer.putInt(bits);
+        buffer.putInt(nonce);
+    }
+
+    /**
+     * Size of the header of a version
+     *
+     * @param version header version
+     * @return bytes
+     */
+    public static int size(int version) {
+        if (version < 1 || version > VERSION)
+            throw new RuntimeException("Unsupported header version " + version);
+        int size = SIZE;
+        if (version < STATE_ROOT_VERSION)
+            size -= Hash.BYTES;
+        if (version < BITS_VERSION)
+            size -= 4;
+        return size;
+    }
+
+    /**
+     * Build the header of a block
+     *
+     * @param block block
+     * @return header
+     */
+    public static BlockHeader of(Block block) {
+        return new BlockHeader(block.getVersion(), block.getPreviousHash(), block.getMerkleRoot(),
+                block.getStateRoot(), block.getTimeStamp(), block.getTxCounter(), block.getBits(), block.getNonce());
+    }
+
+    /**
+     * Creates an independent copy of the header
+     *
+     * @return copy
+     */
+    public BlockHeader copy() {
+        return new BlockHeader(bytes.clone());
+    }
+
+    /**
+     * Calculate the hash of the header
+     *
+     * @return hash
+     */
+    public Hash hash() {
+        return Utils.sha256(bytes);
+    }
+
+    /**
+     * Creates a midstate of the header, used to hash it with different nonces.
+     *
+     * @return midstate
+     */
+    Sha256.Midstate midstate() {
+        return new Sha256.Midstate(bytes, this.nonceOffset());
+    }
+
+    /**
+     * Nonce getter
+     *
+     * @return nonce
+     */
+    public int getNonce() {
+        return ByteBuffer.wrap(bytes).getInt(this.nonceOffset());
+    }
+
+    /**
+     * Nonce setter
+     *
+     * @param nonce new nonce value
+     */
+    public void setNonce(int nonce) {
+        ByteBuffer.wrap(bytes).putInt(this.nonceOffset(), nonce);
+    }
+
+    /**
+     * Position of the nonce, the last field of every version
+     *
+     * @return offset
+     */
+    private int nonceOffset() {
+        return bytes.length - 4;
+    }
+
+    /**
+     * Write the header into a buffer
+     *
+     * @param dst destination buffer
+     */
+    public void writeTo(ByteBuffer dst) {
+        dst.put(bytes);
+    }
+
+}
@@ -0,0 +1,95 @@
+package dumbchain;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * In memory list of blocks backed by a {@link PersistentVector}, so that snapshots share the blocks
+ * and the structure of the list
+ */
+public class BlockList extends AbstractList<Block> implements ChainList {
+
+    private volatile PersistentVector<Block> blocks = PersistentVector.empty();
+
+    @Override
+    public Block get(int index) {
+        return blocks.get(index);
+    }
+
+    @Override
+    public int size() {
+        return blocks.size();
+    }
+
+    @Override
+    public synchronized boolean add(Block block) {
+        blocks = blocks.append(block);
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public synchronized Block set(int index, Block block) {
+        Block previous = blocks.get(index);
+        blocks = blocks.set(index, block);
+        return previous;
+    }
+
+    @Override
+    public synchronized Block remove(int index) {
+        if (index != blocks.size() - 1)
+            throw new UnsupportedOperationException("Only the last block can be removed");
+        Block removed = blocks.get(index);
+        blocks = blocks.pop();
+        modCount++;
+        return removed;
+    }
+
+    @Override
+    public synchronized void clear() {
+        blocks = PersistentVector.empty();
+        modCount++;
+    }
+
+    @Override
+    public List<Block> snapshot() {
+        return new Snapshot(blocks);
+    }
+
+    @Override
+    public synchronized void replaceWith(List<Block> newBlocks, IntConsumer changed) {
+        PersistentVector<Block> target;
+        if (newBlocks instanceof Snapshot)
+            target = ((Snapshot) newBlocks).blocks;
+        else if (newBlocks instanceof BlockList)
+            target = ((BlockList) newBlocks).blocks;
+        else
+            target = PersistentVector.of(newBlocks);
+        blocks.diff(target, changed);
+        blocks = target;
+        modCount++;
+    }
+
+    /**
+     * Read only version of the list
+     */
+    private static final class Snapshot extends AbstractList<Block> {
+
+        private final PersistentVector<Block> blocks;
+
+        private Snapshot(PersistentVector<Block> blocks) {
+            this.blocks = blocks;
+        }
+
+        @Override
+        public Block get(int index) {
+            return blocks.get(index);
+        }
+
+        @Override
+        public int size() {
+            return blocks.size();
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package dumbchain;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Append-only on-disk storage of binary encoded blocks.
+ * <p>
+ * Blocks are appended to a sequence of segment files as records {@code [length][height][block]}, the block being
+ * encoded by {@link BinaryCodec}.
+ * Writing a block again appends a new record, the old one is left in place. An index file maps every
+ * height to the position of its latest record and is replayed when the store is opened.
+ * Reads go through read-only memory mapped segments and decode the block straight from the mapping.
+ */
+public class BlockStore implements Closeable {
+
+    // Default maximum size of a segment
+    public static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+
+    private static final String SEGMENT_FORMAT = "segment-%06d.log";
+    private static final String INDEX_FILE = "blocks.idx";
+    private static final String WATERMARK_FILE = "watermark";
+    private static final int RECORD_HEADER = 8;
+    private static final int INDEX_ENTRY = 12;
+    // Index entry location of a truncation
+    private static final long TRUNCATED = -1;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final List<FileChannel> segments = new ArrayList<>();
+    private final List<MappedByteBuffer> mappings = new ArrayList<>();
+    private final FileChannel index;
+    private final ByteBuffer indexEntry = ByteBuffer.allocate(INDEX_ENTRY);
+
+    // Location of the latest record of every height: segment << 32 | offset
+    private PersistentVector<Long> locations = PersistentVector.empty();
+
+    /**
+     * Opens a store, creating it if the directory is empty
+     *
+     * @param directory directory of the store
+     * @throws IOException if the files cannot be opened
+     */
+    public BlockStore(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Opens a store, creating it if the directory is empty
+     *
+     * @param directory    directory of the store
+     * @param segmentBytes maximum size of a segment file
+     * @throws IOException if the files cannot be opened
+     */
+    public BlockStore(Path directory, long segmentBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+
+        for (int i = 0; Files.exists(segmentPath(i)); i++)
+            openSegment(i);
+        if (segments.isEmpty())
+            openSegment(0);
+
+        this.index = FileChannel.open(directory.resolve(INDEX_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        replayIndex();
+    }
+
+    /**
+     * Number of blocks stored
+     *
+     * @return size
+     */
+    public synchronized int size() {
+        return this.locations.size();
+    }
+
+    /**
+     * Read a block
+     *
+     * @param height id of the block
+     * @return block decoded from the mapped segment
+     */
+    public Block get(int height) {
+        return get(this.locations(), height);
+    }
+
+    /**
+     * Read a block as it was when the locations were taken
+     *
+     * @param locations locations taken with {@link #locations()}
+     * @param height    id of the block
+     * @return block decoded from the mapped segment
+     */
+    Block get(PersistentVector<Long> locations, int height) {
+        if (height < 0 || height >= locations.size())
+            throw new RuntimeException("Invalid block Id");
+        ByteBuffer record;
+        synchronized (this) {
+            record = record(locations.get(height));
+        }
+        return BinaryCodec.decodeBlock(record);
+    }
+
+    /**
+     * Getter of the location of the latest record of every block.
+     * Records are never overwritten, so the blocks can still be read later through the locations.
+     *
+     * @return immutable locations
+     */
+    synchronized PersistentVector<Long> locations() {
+        return this.locations;
+    }
+
+    /**
+     * Point every block back to the records of previous locations
+     *
+     * @param target  locations taken with {@link #locations()}
+     * @param changed receives the ids of the blocks whose record changed, in ascending order
+     */
+    synchronized void restore(PersistentVector<Long> target, IntConsumer changed) {
+        BitSet heights = new BitSet();
+        locations.diff(target, heights::set);
+        try {
+            if (target.size() < locations.size())
+                writeIndex(target.size(), TRUNCATED);
+            for (int h = heights.nextSetBit(0); h >= 0 && h < target.size(); h = heights.nextSetBit(h + 1))
+                writeIndex(h, target.get(h));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.locations = target;
+        heights.stream().forEach(changed);
+    }
+
+    /**
+     * Write a block. Writing a height lower than the size replaces the block stored.
+     *
+     * @param height id of the block, not greater than the size
+     * @param block  block
+     */
+    public synchronized void put(int height, Block block) {
+        if (height < 0 || height > locations.size())
+            throw new RuntimeException("Invalid block Id");
+        ByteBuffer payload = BinaryCodec.encode(block);
+        try {
+            long location = append(height, payload);
+            writeIndex(height, location);
+            setLocation(height, location);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Drop the blocks from a given height
+     *
+     * @param newSize number of blocks kept
+     */
+    public synchronized void truncate(int newSize) {
+        if (newSize < 0 || newSize > locations.size())
+            throw new RuntimeException("Invalid size " + newSize);
+        try {
+            writeIndex(newSize, TRUNCATED);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        while (locations.size() > newSize)
+            locations = locations.pop();
+    }
+
+    /**
+     * Store the validation watermark
+     *
+     * @param height id of the last valid block, -1 if none
+     * @param hash   hash of that block, null if none
+     */
+    public synchronized void setWatermark(int height, Hash hash) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + Hash.BYTES);
+        buffer.putInt(height);
+        (hash == null ? Hash.ZERO : hash).writeTo(buffer);
+        try {
+            // Replace the file atomically
+            Path tmp = directory.resolve(WATERMARK_FILE + ".tmp");
+            Files.write(tmp, buffer.array());
+            Files.move(tmp, directory.resolve(WATERMARK_FILE), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Watermark height getter
+     *
+     * @return id of the last block validated, -1 if none
+     */
+    public synchronized int getWatermarkHeight() {
+        ByteBuffer watermark = readWatermark();
+        return watermark == null ? -1 : watermark.getInt(0);
+    }
+
+    /**
+     * Watermark hash getter
+     *
+     * @return hash of the last block validated, null if none
+     */
+    public synchronized Hash getWatermarkHash() {
+        ByteBuffer watermark = readWatermark();
+        if (watermark == null || watermark.getInt(0) < 0)
+            return null;
+        watermark.position(4);
+        return Hash.read(watermark);
+    }
+
+    /**
+     * Force the written data to the disk
+     */
+    public synchronized void flush() {
+        try {
+            segments.get(segments.size() - 1).force(false);
+            index.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Flush and close the files
+     *
+     * @throws IOException if a file cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        for (FileChannel segment : segments)
+            segment.close();
+        index.close();
+        mappings.clear();
+    }
+
+    private Path segmentPath(int segment) {
+        return directory.resolve(String.format(SEGMENT_FORMAT, segment));
+    }
+
+    private void openSegment(int segment) throws IOException {
+        segments.add(FileChannel.open(segmentPath(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        mappings.add(null);
+    }
+
+    private ByteBuffer readWatermark() {
+        Path path = directory.resolve(WATERMARK_FILE);
+        try {
+            if (!Files.exists(path))
+                return null;
+            return ByteBuffer.wrap(Files.readAllBytes(path));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Rebuild the locations from the index file. Entries pointing to a record missing or cut short
+     * (written before a crash) end the replay.
+     */
+    private void replayIndex() throws IOException {
+        long entries = index.size() / INDEX_ENTRY;
+        ByteBuffer buffer = ByteBuffer.allocate(INDEX_ENTRY);
+        for (long e = 0; e < entries; e++) {
+            buffer.clear();
+            index.read(buffer, e * INDEX_ENTRY);
+            buffer.flip();
+            int height = buffer.getInt();
+            long location = buffer.getLong();
+            if (location == TRUNCATED) {
+                while (locations.size() > height)
+                    locations = locations.pop();
+            } else {
+                if (!isWritten(location) || height > locations.size()) {
+                    index.truncate(e * INDEX_ENTRY);
+                    break;
+                }
+                setLocation(height, location);
+            }
+        }
+        index.position(index.size());
+    }
+
+    /**
+     * Check that the whole record at a location is in its segment
+     *
+     * @param location location of the record
+     * @return true if the header and the payload of the record are written
+     */
+    private boolean isWritten(long location) throws IOException {
+        int segment = (int) (location >>> 32);
+        long offset = location & 0xffffffffL;
+        if (segment >= segments.size())
+            return false;
+        FileChannel channel = segments.get(segment);
+        long size = channel.size();
+        if (offset + RECORD_HEADER > size)
+            return false;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        while (header.hasRemaining()) {
+            if (channel.read(header, offset + header.position()) < 0)
+                return false;
+        }
+        int length = header.getInt(0);
+        return length >= 0 && offset + RECORD_HEADER + length <= size;
+    }
+
+    private void setLocation(int height, long location) {
+        if (height == locations.size())
+            locations = locations.append(location);
+        else
+            locations = locations.set(height, location);
+    }
+
+    private void writeIndex(int height, long location) throws IOException {
+        indexEntry.clear();
+        indexEntry.putInt(height).putLong(location).flip();
+        while (indexEntry.hasRemaining())
+            index.write(indexEntry);
+    }
+
+    /**
+     * Append a record to the active segment, opening a new one when it is full
+     *
+     * @return location of the record
+     */
+    private long append(int height, ByteBuffer payload) throws IOException {
+        int active = segments.size() - 1;
+        FileChannel segment = segments.get(active);
+        long offset = segment.size();
+        int recordBytes = RECORD_HEADER + payload.remaining();
+        if (offset > 0 && offset + recordBytes > segmentBytes) {
+            openSegment(++active);
+            segment = segments.get(active);
+            offset = 0;
+        }
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        header.putInt(payload.remaining()).putInt(height).flip();
+        long position = offset;
+        for (ByteBuffer part : new ByteBuffer[]{header, payload}) {
+            while (part.hasRemaining())
+                position += segment.write(part, position);
+        }
+        return ((long) active << 32) | offset;
+    }
+
+    /**
+     * Slice of a mapped segment holding the block encoding of a record
+     */
+    private ByteBuffer record(long location) {
+        int segment = (int) (location >>> 32);
+        int offset = (int) location;
+        MappedByteBuffer mapping = mappings.get(segment);
+        try {
+            // The active segment grows: map it again when the record is past the mapping
+            if (mapping == null || offset + RECORD_HEADER > mapping.capacity()
+                    || offset + RECORD_HEADER + mapping.getInt(offset) > mapping.capacity()) {
+                FileChannel channel = segments.get(segment);
+                mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                mappings.set(segment, mapping);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int length = mapping.getInt(offset);
+        ByteBuffer slice = mapping.duplicate();
+        slice.position(offset + RECORD_HEADER).limit(offset + RECORD_HEADER + length);
+        return slice.slice();
+    }
+}
@@ -1,18 +1,45 @@
 package dumbchain;
 
-import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Caretaker implementation for the blockchain state.
  * Offer a semplified way to restore previous states of the blockchain.
+ * <p>
+ * The caretaker listens to the changes of the blockchain and keeps a journal of the operations needed
+ * to undo them, so its memory depends on the changes made and not on the size of the chain.
+ * A saved state is a position in the journal. The oldest entries are dropped when the journal exceeds
+ * its limits, together with the states saved before them.
  */
 
-public class Caretaker {
+public class Caretaker implements ChainListener {
 
-    //Set of previous states of the blockchain
-    List<Dumbchain.ChainMemento> savedStates = new ArrayList<>();
-    private Dumbchain blockchain;
+    // Default maximum number of entries of the journal
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+    // Default maximum estimated size of the journal
+    public static final long DEFAULT_MAX_BYTES = 16L << 20;
+
+    // Estimated size of the entries
+    private static final int ENTRY_BYTES = 32;
+    private static final int STATE_BYTES = ENTRY_BYTES + 16 + Hash.BYTES * 2;
+    private static final int BLOCK_BYTES = 256;
+    private static final int TX_BYTES = 96;
+
+    private final Dumbchain blockchain;
+    private final int maxEntries;
+    private final long maxBytes;
+    //Undo operations, the last one first
+    private final Deque<Entry> journal = new ArrayDeque<>();
+    //Saved states, as positions of the journal
+    private final Deque<Long> savedStates = new ArrayDeque<>();
+    // Position of the next entry, the entries are numbered from 0
+    private long position;
+    private long bytes;
+    // The changes made while undoing are not journaled
+    private boolean undoing;
 
     /**
      * Creates a new Cartaker
@@ -20,29 +47,219 @@ public class Caretaker {
      * @param blockchain blockchain
      */
     public Caretaker(Dumbchain blockchain) {
+        this(blockchain, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Creates a new Caretaker with a bounded history
+     *
+     * @param blockchain blockchain
+     * @param maxEntries maximum number of operations kept
+     * @param maxBytes   maximum estimated size of the operations kept
+     */
+    public Caretaker(Dumbchain blockchain, int maxEntries, long maxBytes) {
+        if (maxEntries < 1 || maxBytes < 1)
+            throw new RuntimeException("Invalid history limits");
         this.blockchain = blockchain;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        blockchain.addListener(this);
     }
 
     /**
      * Save the state of the blockchain
+     *
+     * @return checkpoint, to be passed to {@link #restoreTo(long)}
      */
-    public void saveState() {
-        savedStates.add(blockchain.createSnapshot());
+    public long saveState() {
+        long[] checkpoint = new long[1];
+        // No change can happen between the state and its position
+        blockchain.withLock(() -> {
+            synchronized (this) {
+                savedStates.addLast(position);
+                checkpoint[0] = position;
+            }
+        });
+        return checkpoint[0];
     }
 
     /**
      * Restore the last state of the blockchain
      */
     public void restore() {
+        blockchain.withLock(() -> {
+            synchronized (this) {
+                if (this.savedStates.size() == 0)
+                    throw new RuntimeException("No previous states avaiable");
+
+                // Pop the last state
+                this.undoTo(savedStates.removeLast());
+            }
+        });
+    }
+
+    /**
+     * Restore a saved state of the blockchain. The states saved after it are dropped.
+     *
+     * @param checkpoint checkpoint returned by {@link #saveState()}
+     */
+    public void restoreTo(long checkpoint) {
+        // The chain is locked first, as the changes are journaled while it is held
+        blockchain.withLock(() -> {
+            synchronized (this) {
+                this.undoTo(checkpoint);
+            }
+        });
+    }
+
+    private void undoTo(long checkpoint) {
+        if (checkpoint > position)
+            throw new RuntimeException("Unknown state " + checkpoint);
+        if (checkpoint < position - journal.size())
+            throw new RuntimeException("State " + checkpoint + " is no longer in the history");
 
-        if (this.savedStates.size() == 0)
-            throw new RuntimeException("No previous states avaiable");
+        undoing = true;
+        try {
+            while (position > checkpoint) {
+                Entry entry = journal.removeLast();
+                position--;
+                bytes -= entry.bytes;
+                entry.undo(blockchain);
+            }
+            blockchain.stateRestored();
+        } finally {
+            undoing = false;
+        }
+        while (!savedStates.isEmpty() && savedStates.getLast() > checkpoint)
+            savedStates.removeLast();
+    }
 
-        // Pop the last state
-        int lastState = this.savedStates.size() - 1;
-        this.blockchain.restorePreviousState(savedStates.get(lastState));
-        savedStates.remove(lastState);
+    /**
+     * Stop recording the changes of the blockchain
+     */
+    public void close() {
+        blockchain.removeListener(this);
     }
 
+    /**
+     * Getter of the saved states
+     *
+     * @return number of states that can be restored
+     */
+    public synchronized int getSavedStates() {
+        return savedStates.size();
+    }
+
+    /**
+     * Getter of the journal size
+     *
+     * @return number of operations kept
+     */
+    public synchronized int getEntries() {
+        return journal.size();
+    }
+
+    /**
+     * Getter of the journal size in bytes
+     *
+     * @return estimated size of the operations kept
+     */
+    public synchronized long getBytes() {
+        return this.bytes;
+    }
+
+    @Override
+    public synchronized void onEvent(ChainEvent event) {
+        if (undoing || event.getType() == ChainEvent.Type.STATE_RESTORED)
+            return;
+        Entry entry = toEntry(event);
+        if (entry == null) {
+            // The change cannot be undone: the states saved before it are lost
+            journal.clear();
+            savedStates.clear();
+            bytes = 0;
+            return;
+        }
+        journal.addLast(entry);
+        position++;
+        bytes += entry.bytes;
+        // Drop the oldest operations, and the states that needed them
+        while (journal.size() > maxEntries || (bytes > maxBytes && journal.size() > 1)) {
+            bytes -= journal.removeFirst().bytes;
+            while (!savedStates.isEmpty() && savedStates.getFirst() < position - journal.size())
+                savedStates.removeFirst();
+        }
+    }
+
+    /**
+     * Build the operation undoing a change
+     *
+     * @param event change
+     * @return entry, null if the change cannot be undone
+     */
+    private static Entry toEntry(ChainEvent event) {
+        switch (event.getType()) {
+            case BLOCK_ADDED:
+                return new Entry(ENTRY_BYTES, Dumbchain::removeLastBlock);
+            case TX_ADDED: {
+                Block block = event.getBlock();
+                int id = event.getBlockId();
+                int txCount = event.getPosition();
+                Hash merkleRoot = event.getPreviousMerkleRoot();
+                Hash hash = event.getPreviousHash();
+                int bits = block.getBits();
+                int nonce = block.getNonce();
+                return new Entry(STATE_BYTES, chain -> chain.rollbackBlock(id, txCount, merkleRoot, bits, nonce, hash));
+            }
+            case BLOCK_MINED:
+            case BLOCK_UPDATED: {
+                Block previous = event.getPrevious();
+                if (previous == null)
+                    return null;
+                Block block = event.getBlock();
+                if (previous.getTxCounter() == block.getTxCounter()
+                        && previous.getMerkleRoot().equals(block.getMerkleRoot())
+                        && previous.getStateRoot().equals(block.getStateRoot())
+                        && previous.getPreviousHash().equals(block.getPreviousHash())) {
+                    // Only the header changed (e.g. mined): keep the old header fields
+                    int id = previous.getId();
+                    int txCount = previous.getTxCounter();
+                    Hash merkleRoot = previous.getMerkleRoot();
+                    int bits = previous.getBits();
+                    int nonce = previous.getNonce();
+                    Hash hash = previous.getHash();
+                    return new Entry(STATE_BYTES, chain -> chain.rollbackBlock(id, txCount, merkleRoot, bits, nonce, hash));
+                }
+                return new Entry(BLOCK_BYTES + TX_BYTES * previous.getTxCounter(), chain -> chain.restoreBlock(previous));
+            }
+            case BLOCK_REMOVED:
+                // Removals only happen while undoing
+                return null;
+            case CHAIN_REPLACED: {
+                List<Block> previousChain = event.getPreviousChain();
+                // The snapshot shares its structure with the chain
+                return new Entry(ENTRY_BYTES + 8L * previousChain.size(), chain -> chain.setChain(previousChain));
+            }
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Operation of the journal
+     */
+    private static final class Entry {
+        private final long bytes;
+        private final Consumer<Dumbchain> undo;
+
+        private Entry(long bytes, Consumer<Dumbchain> undo) {
+            this.bytes = bytes;
+            this.undo = undo;
+        }
+
+        private void undo(Dumbchain blockchain) {
+            undo.accept(blockchain);
+        }
+    }
 
 }
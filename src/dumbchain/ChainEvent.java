@@ -0,0 +1,166 @@
+package dumbchain;
+
+import java.util.List;
+
+/**
+ * Change made to a blockchain. Along with the new state, an event carries what is needed to undo the change.
+ */
+public final class ChainEvent {
+
+    /**
+     * Kind of change
+     */
+    public enum Type {
+        BLOCK_ADDED,    // a block was appended
+        BLOCK_REMOVED,  // the last block was removed
+        TX_ADDED,       // txs were appended to a block
+        BLOCK_UPDATED,  // a block was replaced by a new version
+        BLOCK_MINED,    // a block was replaced by a mined version, holding the same transactions
+        CHAIN_REPLACED, // the whole chain was replaced
+        STATE_RESTORED  // a saved state was restored, the blocks changed were reported by the previous events
+    }
+
+    private final Type type;
+    private final int blockId;            // Block changed, first block changed for CHAIN_REPLACED
+    private final Block block;            // Block after the change, null if removed
+    private final Block previous;         // BLOCK_UPDATED: version replaced, a copy of the block if modified in place
+    private final List<Tx> txs;           // TX_ADDED: transactions added
+    private final int position;           // TX_ADDED: position of the first transaction in the block
+    private final Hash previousMerkleRoot; // TX_ADDED: merkle root before the txs
+    private final Hash previousHash;      // TX_ADDED: hash before the txs
+    private final List<Block> previousChain; // CHAIN_REPLACED: snapshot of the chain replaced
+
+    private ChainEvent(Type type, int blockId, Block block, Block previous, List<Tx> txs, int position,
+                       Hash previousMerkleRoot, Hash previousHash, List<Block> previousChain) {
+        this.type = type;
+        this.blockId = blockId;
+        this.block = block;
+        this.previous = previous;
+        this.txs = txs;
+        this.position = position;
+        this.previousMerkleRoot = previousMerkleRoot;
+        this.previousHash = previousHash;
+        this.previousChain = previousChain;
+    }
+
+    static ChainEvent blockAdded(Block block) {
+        return new ChainEvent(Type.BLOCK_ADDED, block.getId(), block, null, null, -1, null, null, null);
+    }
+
+    static ChainEvent blockRemoved(int blockId) {
+        return new ChainEvent(Type.BLOCK_REMOVED, blockId, null, null, null, -1, null, null, null);
+    }
+
+    static ChainEvent txsAdded(Block block, List<Tx> txs, int position, Hash previousMerkleRoot,
+                               Hash previousHash) {
+        return new ChainEvent(Type.TX_ADDED, block.getId(), block, null, txs, position, previousMerkleRoot,
+                previousHash, null);
+    }
+
+    static ChainEvent blockUpdated(Block block, Block previous) {
+        return new ChainEvent(Type.BLOCK_UPDATED, block.getId(), block, previous, null, -1, null, null, null);
+    }
+
+    static ChainEvent blockMined(Block block, Block previous) {
+        return new ChainEvent(Type.BLOCK_MINED, block.getId(), block, previous, null, -1, null, null, null);
+    }
+
+    static ChainEvent chainReplaced(int firstChanged, List<Block> previousChain) {
+        return new ChainEvent(Type.CHAIN_REPLACED, firstChanged, null, null, null, -1, null, null, previousChain);
+    }
+
+    static ChainEvent stateRestored() {
+        return new ChainEvent(Type.STATE_RESTORED, -1, null, null, null, -1, null, null, null);
+    }
+
+    /**
+     * Type getter
+     *
+     * @return type of change
+     */
+    public Type getType() {
+        return this.type;
+    }
+
+    /**
+     * Block id getter
+     *
+     * @return id of the block changed, id of the first block changed if the chain was replaced,
+     * -1 if a state was restored
+     */
+    public int getBlockId() {
+        return this.blockId;
+    }
+
+    /**
+     * Block getter
+     *
+     * @return block after the change, null if removed, if the chain was replaced or if a state was restored
+     */
+    public Block getBlock() {
+        return this.block;
+    }
+
+    /**
+     * Previous block getter
+     *
+     * @return version of the block replaced, a copy of the block if it was modified in place
+     */
+    public Block getPrevious() {
+        return this.previous;
+    }
+
+    /**
+     * Tx getter
+     *
+     * @return first transaction added, null for the other changes
+     */
+    public Tx getTx() {
+        return this.txs == null ? null : this.txs.get(0);
+    }
+
+    /**
+     * Txs getter
+     *
+     * @return transactions added, in order, null for the other changes
+     */
+    public List<Tx> getTxs() {
+        return this.txs;
+    }
+
+    /**
+     * Position getter
+     *
+     * @return position of the first transaction added in the block, -1 for the other changes
+     */
+    public int getPosition() {
+        return this.position;
+    }
+
+    /**
+     * Previous merkle root getter
+     *
+     * @return merkle root of the block before the txs were added, null for the other changes
+     */
+    public Hash getPreviousMerkleRoot() {
+        return this.previousMerkleRoot;
+    }
+
+    /**
+     * Previous hash getter
+     *
+     * @return hash of the block before the txs were added, null for the other changes
+     */
+    public Hash getPreviousHash() {
+        return this.previousHash;
+    }
+
+    /**
+     * Previous chain getter
+     *
+     * @return snapshot of the chain replaced, null for the other changes
+     */
+    public List<Block> getPreviousChain() {
+        return this.previousChain;
+    }
+}
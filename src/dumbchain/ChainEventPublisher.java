@@ -0,0 +1,120 @@
+package dumbchain;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Stream of the changes made to a blockchain, including the blocks mined by a {@link Miner} and the
+ * states restored by a {@link Caretaker}.
+ * <p>
+ * Every subscriber receives the events in order through its own bounded buffer, as it requests them.
+ * The writers of the chain never wait for a subscriber: when a buffer is full the event is dropped for that
+ * subscriber, which receives a {@link ChainEvent.Type#CHAIN_REPLACED} event from the first block, without the
+ * previous chain, in place of the next one. It then reads the chain again: the changes are published before
+ * the events, and the events still buffered may refer to changes already read.
+ */
+public class ChainEventPublisher implements Flow.Publisher<ChainEvent>, ChainListener, AutoCloseable {
+
+    private final Dumbchain blockchain;
+    private final SubmissionPublisher<ChainEvent> publisher;
+
+    /**
+     * Creates a publisher delivering the events on the common pool
+     *
+     * @param blockchain blockchain
+     */
+    public ChainEventPublisher(Dumbchain blockchain) {
+        this(blockchain, ForkJoinPool.commonPool(), Flow.defaultBufferSize());
+    }
+
+    /**
+     * Creates a publisher
+     *
+     * @param blockchain     blockchain
+     * @param executor       executor delivering the events
+     * @param bufferCapacity maximum number of events waiting for every subscriber
+     */
+    public ChainEventPublisher(Dumbchain blockchain, Executor executor, int bufferCapacity) {
+        this.blockchain = blockchain;
+        this.publisher = new SubmissionPublisher<>(executor, bufferCapacity);
+        blockchain.addListener(this);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ChainEvent> subscriber) {
+        publisher.subscribe(new Relay(subscriber));
+    }
+
+    @Override
+    public void onEvent(ChainEvent event) {
+        if (!publisher.isClosed())
+            publisher.offer(event, (subscriber, dropped) -> {
+                ((Relay) subscriber).missed.set(true);
+                return false;
+            });
+    }
+
+    /**
+     * Getter of the subscribers
+     *
+     * @return number of subscribers
+     */
+    public int getSubscribers() {
+        return publisher.getNumberOfSubscribers();
+    }
+
+    /**
+     * Getter of the lag
+     *
+     * @return number of events published and not yet delivered to the slowest subscriber
+     */
+    public int getLag() {
+        return publisher.estimateMaximumLag();
+    }
+
+    /**
+     * Stop publishing the changes, the subscribers are completed after the events pending
+     */
+    @Override
+    public void close() {
+        blockchain.removeListener(this);
+        publisher.close();
+    }
+
+    /**
+     * Subscriber told to read the chain again once it has missed some events
+     */
+    private static final class Relay implements Flow.Subscriber<ChainEvent> {
+
+        private final Flow.Subscriber<? super ChainEvent> subscriber;
+        // Set when an event is dropped, until the subscriber is told
+        private final AtomicBoolean missed = new AtomicBoolean();
+
+        private Relay(Flow.Subscriber<? super ChainEvent> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscriber.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(ChainEvent event) {
+            subscriber.onNext(missed.getAndSet(false) ? ChainEvent.chainReplaced(0, null) : event);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            subscriber.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            subscriber.onComplete();
+        }
+    }
+}
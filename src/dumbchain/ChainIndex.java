@@ -0,0 +1,163 @@
+package dumbchain;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Primary indexes of the blockchain: block hash to block id and tx hash to (block id, position).
+ * <p>
+ * The index is updated as blocks and transactions are added, so the entries may be stale when a block
+ * is modified without notifying the chain: the caller must check the block found.
+ * The hash indexed for every block is kept, so the old entry is removed when the hash of a block changes.
+ */
+public class ChainIndex {
+
+    // Number of blocks whose hashes are calculated before being inserted by a rebuild
+    private static final int REBUILD_CHUNK = 4096;
+
+    private final boolean offHeap;
+    private final HashIndex blocks;
+    private final HashIndex txs;
+    // Hash indexed for every block id
+    private ByteBuffer blockHashes;
+    private int indexedBlocks;
+
+    /**
+     * Creates an empty index
+     *
+     * @param offHeap true to store the index outside of the heap, for large chains
+     */
+    public ChainIndex(boolean offHeap) {
+        this.offHeap = offHeap;
+        this.blocks = offHeap ? new OffHeapHashIndex() : new HeapHashIndex();
+        this.txs = offHeap ? new OffHeapHashIndex() : new HeapHashIndex();
+        this.blockHashes = allocate(1024);
+    }
+
+    /**
+     * Index the hash and the transactions of a block
+     *
+     * @param block block
+     */
+    public synchronized void index(Block block) {
+        this.putBlock(block);
+        List<Tx> blockTxs = block.getTxs();
+        for (int i = 0; i < blockTxs.size(); i++)
+            this.putTx(block.getId(), i, blockTxs.get(i).getHash());
+    }
+
+    /**
+     * Index the current hash of a block, replacing the one indexed before
+     *
+     * @param block block
+     */
+    public synchronized void putBlock(Block block) {
+        this.putBlock(block.getId(), block.getHash());
+    }
+
+    private void putBlock(int id, Hash hash) {
+        if (id < indexedBlocks) {
+            Hash old = Hash.read(blockHashes.duplicate().position(id * Hash.BYTES));
+            if (old.equals(hash))
+                return;
+            // Another block could have the same hash
+            if (blocks.get(old) == id)
+                blocks.remove(old);
+        } else if ((long) (id + 1) * Hash.BYTES > blockHashes.capacity()) {
+            ByteBuffer grown = allocate(Math.max(id + 1, blockHashes.capacity() / Hash.BYTES * 2));
+            grown.put(blockHashes.duplicate().clear());
+            blockHashes = grown;
+        }
+        hash.writeTo(blockHashes.duplicate().position(id * Hash.BYTES));
+        indexedBlocks = Math.max(indexedBlocks, id + 1);
+        blocks.put(hash, id);
+    }
+
+    /**
+     * Index a transaction
+     *
+     * @param blockId  id of the block holding the transaction
+     * @param position position of the transaction in the block
+     * @param txHash   hash of the transaction
+     */
+    public synchronized void putTx(int blockId, int position, Hash txHash) {
+        txs.put(txHash, ((long) blockId << 32) | position);
+    }
+
+    /**
+     * Index every block of a chain. The blocks are read and their hashes calculated in parallel,
+     * a chunk at a time, then the hashes of the chunk are inserted in order.
+     *
+     * @param chain blocks
+     */
+    public void rebuild(List<Block> chain) {
+        synchronized (this) {
+            blocks.clear();
+            txs.clear();
+            indexedBlocks = 0;
+            blockHashes = allocate(Math.max(1024, chain.size()));
+        }
+        for (int start = 0; start < chain.size(); start += REBUILD_CHUNK) {
+            int from = start;
+            Hash[][] hashes = new Hash[Math.min(REBUILD_CHUNK, chain.size() - from)][];
+            IntStream.range(0, hashes.length).parallel().forEach(i -> hashes[i] = hashesOf(chain.get(from + i)));
+            synchronized (this) {
+                for (int i = 0; i < hashes.length; i++) {
+                    this.putBlock(from + i, hashes[i][0]);
+                    for (int j = 1; j < hashes[i].length; j++)
+                        txs.put(hashes[i][j], ((long) (from + i) << 32) | (j - 1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Hashes of a block: the hash of the block followed by the ones of its transactions
+     *
+     * @param block block
+     * @return hashes
+     */
+    private static Hash[] hashesOf(Block block) {
+        List<Tx> blockTxs = block.getTxs();
+        Hash[] hashes = new Hash[blockTxs.size() + 1];
+        hashes[0] = block.getHash();
+        for (int i = 0; i < blockTxs.size(); i++)
+            hashes[i + 1] = blockTxs.get(i).getHash();
+        return hashes;
+    }
+
+    /**
+     * Find the id of a block
+     *
+     * @param hash hash of the block
+     * @return id of the block indexed with the hash, -1 if not found
+     */
+    public synchronized int blockId(Hash hash) {
+        return (int) blocks.get(hash);
+    }
+
+    /**
+     * Find the location of a transaction
+     *
+     * @param hash hash of the transaction
+     * @return block id in the high 32 bits and position in the low 32 bits, {@link HashIndex#MISSING} if not found
+     */
+    public synchronized long txLocation(Hash hash) {
+        return txs.get(hash);
+    }
+
+    /**
+     * Off heap getter
+     *
+     * @return true if the index is stored outside of the heap
+     */
+    public boolean isOffHeap() {
+        return this.offHeap;
+    }
+
+    private ByteBuffer allocate(int hashes) {
+        int bytes = hashes * Hash.BYTES;
+        return offHeap ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes);
+    }
+}
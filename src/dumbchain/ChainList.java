@@ -0,0 +1,26 @@
+package dumbchain;
+
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * List of the blocks of a chain able to take constant time snapshots
+ */
+public interface ChainList extends List<Block> {
+
+    /**
+     * Take an immutable snapshot of the list. The blocks are shared with the list.
+     *
+     * @return read only list of the current blocks
+     */
+    List<Block> snapshot();
+
+    /**
+     * Replace the content of the list. Restoring a snapshot of the list only touches the blocks
+     * changed since the snapshot was taken.
+     *
+     * @param blocks  new blocks
+     * @param changed receives the ids of the blocks that may have changed, in ascending order
+     */
+    void replaceWith(List<Block> blocks, IntConsumer changed);
+}
@@ -0,0 +1,14 @@
+package dumbchain;
+
+/**
+ * Receives the changes made to a blockchain, on the thread making them
+ */
+public interface ChainListener {
+
+    /**
+     * Called after a change
+     *
+     * @param event change
+     */
+    void onEvent(ChainEvent event);
+}
@@ -0,0 +1,128 @@
+package dumbchain;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Validates the blocks of a chain in parallel.
+ * Every block is checked on its own against the hash stored in the previous one: hash, linkage,
+ * target, proof of work, merkle root and signatures. The state roots are then checked going back from the state
+ * of the chain down to the first block checked, whose previous block must store the state reached.
+ * All the faults are collected instead of stopping at the first one.
+ */
+public class ChainValidator {
+
+    private final Dumbchain blockchain;
+
+    /**
+     * Creates a new validator
+     *
+     * @param blockchain blockchain to validate
+     */
+    public ChainValidator(Dumbchain blockchain) {
+        this.blockchain = blockchain;
+    }
+
+    /**
+     * Validate a range of blocks
+     *
+     * @param from id of the first block
+     * @param to   id of the last block, exclusive
+     * @return report
+     */
+    public ValidationReport validate(int from, int to) {
+        List<Block> chain = blockchain.getChain();
+        Queue<ValidationReport.Fault> faults = new ConcurrentLinkedQueue<>();
+        IntStream.range(from, to).parallel().forEach(i -> checkBlock(chain, i, faults));
+        blockchain.withLock(() -> checkState(chain, from, to, faults));
+        return new ValidationReport(from, to, faults);
+    }
+
+    /**
+     * Check a single block
+     *
+     * @param chain  blocks
+     * @param i      id of the block
+     * @param faults destination of the faults found
+     */
+    private void checkBlock(List<Block> chain, int i, Queue<ValidationReport.Fault> faults) {
+        Block block = chain.get(i);
+        String name = i == 0 ? "genesis block" : "block with index " + block.getId();
+
+        // Check if the block hash is correct
+        if (!block.getHash().equals(block.calculateHash()))
+            faults.add(new ValidationReport.Fault(i, ValidationReport.FaultType.INVALID_HASH,
+                    "Invalid Hash for " + name));
+        //Check if the previous block hash is correct
+        if (i > 0 && !block.getPreviousHash().equals(chain.get(i - 1).getHash()))
+            faults.add(new ValidationReport.Fault(i, ValidationReport.FaultType.INVALID_PREVIOUS_HASH,
+                    "Invalid previous Hash for " + name));
+        //Check if the block stores the right target
+        if (block.getBits() != blockchain.expectedTarget(i).toCompact())
+            faults.add(new ValidationReport.Fault(i, ValidationReport.FaultType.INVALID_TARGET,
+                    "Invalid target for " + name));
+        //Check if the block is mined
+        if (!blockchain.getMiningStrategy().validateBlock(block))
+            faults.add(new ValidationReport.Fault(i, ValidationReport.FaultType.UNMINED,
+                    "Unmined " + name));
+        //Check if the transactions match the merkle root
+        if (!block.validateTransactions(blockchain.getMerkleTreeBuilder()))
+            faults.add(new ValidationReport.Fault(i, ValidationReport.FaultType.INVALID_MERKLE_ROOT,
+                    "Invalid merkle root for " + name));
+        //Check the signatures, the ones verified when the transactions were added are cached
+        Tx invalid = blockchain.getSignatureVerifier().findInvalid(block.getTxs());
+        if (invalid != null)
+            faults.add(new ValidationReport.Fault(i, ValidationReport.FaultType.INVALID_SIGNATURE,
+                    "Invalid signature of TX " + invalid.getHash() + " in " + name));
+    }
+
+    /**
+     * Check the state roots and the transfers. Starting from the state after the last block, the transfers of the
+     * blocks down to the first one checked are undone on an overlay, which stores only the accounts changed:
+     * each block must store the state found before undoing its transfers, every transfer must be valid in the
+     * state found after undoing it and the block before the first one must store the state reached.
+     * Called holding the chain, which must be the one of the state.
+     *
+     * @param chain  blocks, the state of the chain is the one after the last
+     * @param from   id of the first block checked
+     * @param to     id of the last block checked, exclusive
+     * @param faults destination of the faults found
+     */
+    private void checkState(List<Block> chain, int from, int to, Queue<ValidationReport.Fault> faults) {
+        StateEngine state = blockchain.getState().overlay();
+        for (int i = chain.size() - 1; i >= from; i--) {
+            Block block = chain.get(i);
+            String name = i == 0 ? "genesis block" : "block with index " + block.getId();
+            // The headers before the state root do not commit to it
+            if (i < to && block.getVersion() >= BlockHeader.STATE_ROOT_VERSION
+                    && !block.getStateRoot().equals(state.getRoot()))
+                faults.add(new ValidationReport.Fault(i, ValidationReport.FaultType.INVALID_STATE_ROOT,
+                        "Invalid state root for " + name));
+            List<Tx> txs = block.getTxs();
+            String fault = null;
+            for (int j = txs.size() - 1; j >= 0; j--) {
+                Transfer transfer = Transfer.of(txs.get(j));
+                if (transfer == null)
+                    continue;
+                String reason = state.revertChecked(transfer);
+                if (reason != null)
+                    fault = "Invalid transfer " + txs.get(j).getHash() + " in " + name + ": " + reason;
+            }
+            if (i < to && fault != null)
+                faults.add(new ValidationReport.Fault(i, ValidationReport.FaultType.INVALID_TRANSFER, fault));
+        }
+        // Going back from the state of the chain must lead to the state before the genesis block
+        if (from == 0 && !state.getRoot().equals(state.getInitialRoot()))
+            faults.add(new ValidationReport.Fault(0, ValidationReport.FaultType.INVALID_STATE_ROOT,
+                    "The state does not match the transactions of the chain"));
+        // or to the state stored by the block below the first one checked
+        if (from > 0 && from < chain.size()) {
+            Block below = chain.get(from - 1);
+            if (below.getVersion() >= BlockHeader.STATE_ROOT_VERSION && !below.getStateRoot().equals(state.getRoot()))
+                faults.add(new ValidationReport.Fault(from, ValidationReport.FaultType.INVALID_STATE_ROOT,
+                        "The state does not match the transactions from block with index " + from));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package dumbchain;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable version of a chain, published by the chain after every change.
+ * A view can be scanned by any thread without locking, while the chain keeps changing: the blocks
+ * changed after the view was published are new versions, the ones in the view stay as they were.
+ */
+public final class ChainView extends AbstractList<Block> implements RandomAccess {
+
+    private final long version;
+    private final List<Block> blocks;
+
+    /**
+     * Creates a new view
+     *
+     * @param version number of changes made to the chain before the view
+     * @param blocks  immutable blocks
+     */
+    ChainView(long version, List<Block> blocks) {
+        this.version = version;
+        this.blocks = blocks;
+    }
+
+    @Override
+    public Block get(int index) {
+        if (index < 0 || index >= blocks.size())
+            throw new IndexOutOfBoundsException("Invalid block Id " + index);
+        return blocks.get(index);
+    }
+
+    @Override
+    public int size() {
+        return blocks.size();
+    }
+
+    /**
+     * Version getter
+     *
+     * @return number of changes made to the chain before the view, a newer view has a greater version
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Getter of the blocks
+     *
+     * @return snapshot taken by the chain
+     */
+    List<Block> getBlocks() {
+        return this.blocks;
+    }
+
+    /**
+     * Getter of the last block
+     *
+     * @return last block
+     */
+    public Block getLastBlock() {
+        if (blocks.isEmpty())
+            throw new RuntimeException("The blockchain is empty");
+        return blocks.get(blocks.size() - 1);
+    }
+}
@@ -1,21 +1,66 @@
 package dumbchain;
 
-import com.google.gson.GsonBuilder;
-
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Implements a basic (dumb) blockchain
  */
 public class Dumbchain implements Serialized {
 
-    // The max number of tx stored in a block
-    public static int BLOCK_THRESHOLD = 5;
-    // Block..chain
-    public List<Block> chain = new ArrayList<>();
+    // Default max number of tx stored in a block
+    public static final int BLOCK_THRESHOLD = 5;
+    // Block..chain, read through the published view, see getChain()
+    private ChainList chain = new BlockList();
     // Mining algorithm
     private MiningStrategy miningStrategy;
+    // Difficulty adjustment, null if the target of the mining algorithm is used for every block
+    private Retargeter retargeter;
+    // Merkle tree builder used to validate the transactions
+    private MerkleTreeBuilder merkleTreeBuilder = MerkleTreeBuilder.parallel();
+    // Verifier of the signed transactions
+    private SignatureVerifier signatureVerifier = new SignatureVerifier();
+    // Validated-up-to watermark: blocks 0..validatedHeight are known to be valid
+    private int validatedHeight = -1;
+    private Hash validatedHash;         // hash of the block at validatedHeight when it was validated
+    // Persistent view of the chain, null if the chain is only in memory
+    private StoredChain storedChain;
+    // Block hash and tx hash indexes
+    private ChainIndex index;
+    // Balances of the accounts after the last block
+    private final StateEngine state;
+    // Seal of the blocks not shared with a snapshot yet
+    private Block.Seal seal = new Block.Seal();
+    // Receivers of the changes
+    private final List<ChainListener> listeners = new CopyOnWriteArrayList<>();
+    // The max number of tx stored in a block
+    private volatile int blockThreshold = BLOCK_THRESHOLD;
+    // Writers lock: the chain is changed by one thread at a time, readers go through the published view
+    private final ReentrantLock lock = new ReentrantLock();
+    // Last version of the chain published
+    private final AtomicReference<ChainView> view = new AtomicReference<>();
 
     /**
      * Default constructor. Set PoW with automining
@@ -30,11 +75,82 @@ public class Dumbchain implements Serialized {
      * @param miningStrategy mining algorithm
      */
     public Dumbchain(MiningStrategy miningStrategy) {
+        this(miningStrategy, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param miningStrategy mining algorithm
+     * @param retargeter     difficulty adjustment, null to use the target of the mining algorithm
+     */
+    public Dumbchain(MiningStrategy miningStrategy, Retargeter retargeter) {
+        this(miningStrategy, retargeter, null);
+    }
+
+    /**
+     * Constructor. A chain over a non empty store continues from its blocks and validation watermark.
+     *
+     * @param miningStrategy mining algorithm
+     * @param retargeter     difficulty adjustment, null to use the target of the mining algorithm
+     * @param store          store of the blocks, null to keep the chain in memory
+     */
+    public Dumbchain(MiningStrategy miningStrategy, Retargeter retargeter, BlockStore store) {
+        this(miningStrategy, retargeter, store, new ChainIndex(store != null));
+    }
+
+    /**
+     * Constructor. A chain over a non empty store continues from its blocks and validation watermark,
+     * the index is rebuilt from the stored blocks.
+     *
+     * @param miningStrategy mining algorithm
+     * @param retargeter     difficulty adjustment, null to use the target of the mining algorithm
+     * @param store          store of the blocks, null to keep the chain in memory
+     * @param index          empty index of the block and tx hashes
+     */
+    public Dumbchain(MiningStrategy miningStrategy, Retargeter retargeter, BlockStore store, ChainIndex index) {
+        this(miningStrategy, retargeter, store, index, new StateEngine());
+    }
+
+    /**
+     * Constructor. A chain over a non empty store continues from its blocks and validation watermark,
+     * the index and the state are rebuilt from the stored blocks.
+     *
+     * @param miningStrategy mining algorithm
+     * @param retargeter     difficulty adjustment, null to use the target of the mining algorithm
+     * @param store          store of the blocks, null to keep the chain in memory
+     * @param index          empty index of the block and tx hashes
+     * @param state          state before the genesis block
+     */
+    public Dumbchain(MiningStrategy miningStrategy, Retargeter retargeter, BlockStore store, ChainIndex index,
+                     StateEngine state) {
         this.miningStrategy = miningStrategy;
+        this.retargeter = retargeter;
+        this.index = index;
+        this.state = state;
+        if (store != null) {
+            this.storedChain = new StoredChain(store, StoredChain.DEFAULT_CACHE_SIZE);
+            this.chain = storedChain;
+            this.validatedHeight = store.getWatermarkHeight();
+            this.validatedHash = store.getWatermarkHash();
+            if (!chain.isEmpty()) {
+                index.rebuild(chain);
+                for (Block block : chain)
+                    state.replay(block.getTxs());
+                this.publish();
+                return;
+            }
+        }
         // genesis block
-        Block genesisBlock = BlockBuilder.newBlock(0).build();
+        BlockBuilder genesisBuilder = BlockBuilder.newBlock(0);
+        genesisBuilder.target(this.nextTarget());
+        genesisBuilder.stateRoot(state.getRoot());
+        Block genesisBlock = genesisBuilder.build();
         genesisBlock.addTx(new MinimalTransaction("GENESIS"));
+        genesisBlock.setSeal(seal);
         chain.add(genesisBlock);
+        index.index(genesisBlock);
+        this.publish();
     }
 
     /**
@@ -43,14 +159,15 @@ public class Dumbchain implements Serialized {
      * @return snapshot
      */
     public ChainMemento createSnapshot() {
-
-        //List<Block> state = new ArrayList<>(this.chain);
-
-        List<Block> state = new ArrayList<>();
-        for (Block b : chain)
-            state.add(new Block(b));
-
-        return new ChainMemento(state);
+        lock.lock();
+        try {
+            // The blocks are shared with the snapshot: seal them, they are copied when modified
+            this.seal.close();
+            this.seal = new Block.Seal();
+            return new ChainMemento(chain.snapshot());
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -66,27 +183,243 @@ public class Dumbchain implements Serialized {
      * Creates a new block.
      */
     public void createBlock() {
-        int chainSize = chain.size();
-        // Set the previous hash
-        String previousHash = (chainSize == 0) ? "0" : this.getHashLastBlock();
-        // Use the blockbuilder class
-        BlockBuilder builder = BlockBuilder.newBlock(chainSize);
-        builder.previousHash(previousHash);
-        //Add the block created
-        this.addBlock(builder.build());
+        lock.lock();
+        try {
+            int chainSize = chain.size();
+            // Set the previous hash
+            Hash previousHash = (chainSize == 0) ? Hash.ZERO : this.getHashLastBlock();
+            // Use the blockbuilder class
+            BlockBuilder builder = BlockBuilder.newBlock(chainSize);
+            builder.previousHash(previousHash);
+            builder.target(this.nextTarget());
+            // An empty block does not change the state
+            builder.stateRoot(this.getLastBlock().getStateRoot());
+            //Add the block created
+            this.appendBlock(builder.build());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Creates a new block holding some transactions.
+     * The transfers are checked against the state, no block is added if one is invalid.
+     *
+     * @param txs transactions of the block
+     * @return the block added
+     */
+    Block createBlock(List<Tx> txs) {
+        lock.lock();
+        try {
+            Hash[] roots = state.apply(txs);
+            BlockBuilder builder = BlockBuilder.newBlock(chain.size());
+            builder.previousHash(this.getHashLastBlock());
+            builder.target(this.nextTarget());
+            builder.stateRoot(roots.length > 0 ? roots[roots.length - 1] : this.getLastBlock().getStateRoot());
+            Block block = builder.build();
+            block.addTxs(txs);
+            try {
+                this.appendBlock(block);
+            } catch (RuntimeException e) {
+                state.revert(txs);
+                throw e;
+            }
+            return block;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
      * Add a block in the blockchain.
+     * Its transfers are applied to the state, which must have the root stored in the block.
      *
      * @param block block
      */
     public void addBlock(Block block) {
+        lock.lock();
+        try {
+            Hash[] roots = state.apply(block.getTxs());
+            Hash root = roots.length > 0 ? roots[roots.length - 1] : this.getLastBlock().getStateRoot();
+            if (!root.equals(block.getStateRoot())) {
+                state.revert(block.getTxs());
+                throw new RuntimeException("Invalid state root for block " + block.getId());
+            }
+            try {
+                this.appendBlock(block);
+            } catch (RuntimeException e) {
+                state.revert(block.getTxs());
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Add a block whose transfers are already applied to the state
+     *
+     * @param block block
+     */
+    private void appendBlock(Block block) {
         Block previousBlock = chain.get(chain.size() - 1);
         // Check block integrity
         if (!block.getPreviousHash().equals(previousBlock.getHash()))
             throw new RuntimeException("Attempt to insert an invalid block");
+        if (!block.isSealed())
+            block.setSeal(seal);
         chain.add(block);
+        index.index(block);
+        this.commit(ChainEvent.blockAdded(block));
+    }
+
+    /**
+     * Store a new version of a block (e.g. a mined copy).
+     * The block replaces the one with the same id only if they hold the same previous hash and transactions.
+     * The earlier version of a block changed in place is lost: undoing the update keeps the block as it is.
+     *
+     * @param block block
+     * @return true if the block is stored, false if the block of the chain has changed
+     */
+    public boolean updateBlock(Block block) {
+        lock.lock();
+        try {
+            int id = block.getId();
+            if (id < 0 || id >= chain.size())
+                return false;
+            Block current = chain.get(id);
+            if (current != block && (!current.getPreviousHash().equals(block.getPreviousHash())
+                    || !current.getMerkleRoot().equals(block.getMerkleRoot())))
+                return false;
+            this.replaceBlock(block);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replace a block of the chain by another version
+     *
+     * @param block new version of the block
+     */
+    private void replaceBlock(Block block) {
+        int id = block.getId();
+        Block previous = chain.get(id);
+        if (!block.isSealed())
+            block.setSeal(seal);
+        chain.set(id, block);
+        index.index(block);
+        this.invalidateFrom(id);
+        if (previous != block) {
+            // The previous version is kept by the listeners, it must not change anymore
+            previous.seal();
+            boolean sameTxs = previous.getTxCounter() == block.getTxCounter()
+                    && previous.getMerkleRoot().equals(block.getMerkleRoot())
+                    && previous.getPreviousHash().equals(block.getPreviousHash());
+            if (sameTxs && !miningStrategy.validateBlock(previous) && miningStrategy.validateBlock(block))
+                this.commit(ChainEvent.blockMined(block, previous));
+            else
+                this.commit(ChainEvent.blockUpdated(block, previous));
+        } else {
+            // Changed in place: report a copy as previous version, so the listeners keep their history
+            Block copy = new Block(block);
+            copy.seal();
+            this.commit(ChainEvent.blockUpdated(block, copy));
+        }
+    }
+
+    /**
+     * Put back a previous version of a block, without any check.
+     * Only the last block can get back different transactions, the state of the later blocks would be stale.
+     *
+     * @param block previous version of the block
+     */
+    void restoreBlock(Block block) {
+        lock.lock();
+        try {
+            if (block.getId() < 0 || block.getId() >= chain.size())
+                throw new RuntimeException("Invalid block Id");
+            Block current = chain.get(block.getId());
+            if (!current.getMerkleRoot().equals(block.getMerkleRoot())) {
+                if (block.getId() != chain.size() - 1)
+                    throw new RuntimeException("Only the last block can get back different TXs");
+                state.revert(current.getTxs());
+                state.replay(block.getTxs());
+            }
+            this.replaceBlock(block);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Bring a block back to an earlier state, see {@link Block#rollback}.
+     * Only the last block can drop transactions, the state of the later blocks would be stale.
+     *
+     * @param id         id of the block
+     * @param txCount    number of transactions kept
+     * @param merkleRoot merkle root of the earlier state
+     * @param bits       bits of the earlier state
+     * @param nonce      nonce of the earlier state
+     * @param hash       hash of the earlier state
+     */
+    void rollbackBlock(int id, int txCount, Hash merkleRoot, int bits, int nonce, Hash hash) {
+        lock.lock();
+        try {
+            Block current = this.getBlock(id);
+            List<Tx> txs = current.getTxs();
+            List<Tx> dropped = txs.subList(Math.min(txCount, txs.size()), txs.size());
+            if (!dropped.isEmpty() && id != chain.size() - 1)
+                throw new RuntimeException("Only the TXs of the last block can be rolled back");
+            state.revert(dropped);
+            Block block = new Block(current);
+            // The block is the last one: the state is back to the one after the TXs kept
+            if (!dropped.isEmpty())
+                block.setStateRoot(state.getRoot());
+            block.rollback(txCount, merkleRoot, bits, nonce, hash);
+            this.replaceBlock(block);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove the last block of the chain
+     */
+    void removeLastBlock() {
+        lock.lock();
+        try {
+            int id = chain.size() - 1;
+            if (id == 0)
+                throw new RuntimeException("The genesis block cannot be removed");
+            this.invalidateFrom(id);
+            state.revert(chain.get(id).getTxs());
+            chain.remove(id);
+            this.commit(ChainEvent.blockRemoved(id));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Notify the end of the changes restoring a saved state
+     */
+    void stateRestored() {
+        lock.lock();
+        try {
+            this.commit(ChainEvent.stateRestored());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write the pending changes of a persistent chain to the disk
+     */
+    public void flush() {
+        if (storedChain != null)
+            storedChain.flush();
     }
 
     /**
@@ -95,48 +428,157 @@ public class Dumbchain implements Serialized {
      * @param tx TX
      */
     public void addTx(Tx tx) {
-        // Check if the last block is full or is mined
-        if (getLastBlock().getTxCounter() == BLOCK_THRESHOLD || miningStrategy.validateHash(getLastBlock().getHash())) {
-            this.createBlock();
-            this.addTx(tx);
-        } else {
-            this.getLastBlock().addTx(tx);
-        }
+        this.addTxs(Collections.singletonList(tx));
+    }
 
+    /**
+     * Add TXs in the last block of the chain, creating new blocks when it is full or mined.
+     * Every block changed is copied, filled and published once, its merkle root and hash are computed once.
+     * The signatures are verified in parallel and the transfers are checked against the state before any TX is
+     * added: if one is invalid none is added. If a block cannot be stored, the TXs not stored are taken back
+     * from the state.
+     *
+     * @param txs TXs, in order
+     */
+    public void addTxs(Collection<? extends Tx> txs) {
+        List<Tx> pending = new ArrayList<>(txs);
+        for (Tx tx : pending) {
+            if (tx == null)
+                throw new RuntimeException("Invalid TX (null)");
+        }
+        signatureVerifier.checkAll(pending);
+        lock.lock();
+        try {
+            Hash[] roots = state.apply(pending);
+            int next = 0;
+            // TXs stored in the chain
+            int stored = 0;
+            try {
+                while (next < pending.size()) {
+                    // Check if the last block is full or is mined
+                    Block lastBlock = this.getLastBlock();
+                    if (lastBlock.getTxCounter() >= blockThreshold || miningStrategy.validateBlock(lastBlock)) {
+                        this.createBlock();
+                        lastBlock = this.getLastBlock();
+                    }
+                    int count = Math.min(pending.size() - next,
+                            Math.max(1, blockThreshold - lastBlock.getTxCounter()));
+                    List<Tx> blockTxs = Collections.unmodifiableList(
+                            new ArrayList<>(pending.subList(next, next + count)));
+                    next += count;
+
+                    Block block = new Block(lastBlock);
+                    block.setSeal(seal);
+                    int position = block.getTxs().size();
+                    block.setStateRoot(roots[next - 1]);
+                    block.addTxs(blockTxs);
+                    this.invalidateFrom(block.getId());
+                    chain.set(block.getId(), block);
+                    stored = next;
+                    for (int i = 0; i < blockTxs.size(); i++)
+                        index.putTx(block.getId(), position + i, blockTxs.get(i).getHash());
+                    index.putBlock(block);
+                    this.commit(ChainEvent.txsAdded(block, blockTxs, position, lastBlock.getMerkleRoot(),
+                            lastBlock.getHash()));
+                }
+            } catch (RuntimeException e) {
+                state.revert(pending.subList(stored, pending.size()));
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
-     * Check if the blockchain is valid
+     * Check if the blockchain is valid. The first fault found is thrown.
      *
-     * @return True if it is, false otherwise
+     * @return True if it is
      */
     public boolean validateBlockchain() {
+        ValidationReport report = this.validate();
+        if (!report.isValid())
+            throw new RuntimeException(report.getFaults().get(0).getMessage());
+        return true;
+    }
 
-        Block currentBlock;
-        Block previousBlock;
-
-        // Genesis control
-        Block genesisBlock = chain.get(0);
-        if (!genesisBlock.getHash().equals(genesisBlock.calculateHash()))
-            throw new RuntimeException("Invalid Hash for genesis block");
-        if (!this.miningStrategy.validateHash(genesisBlock.getHash()))
-            throw new RuntimeException("Genesis block is not mined");
-
-        // Check all the blocks
-        for (int i = 1; i < chain.size(); i++) {
-            currentBlock = chain.get(i);
-            previousBlock = chain.get(i - 1);
-            // Check if the block hash is correct
-            if (!currentBlock.getHash().equals(currentBlock.calculateHash()))
-                throw new RuntimeException("Invalid Hash for block with index: " + currentBlock.getId());
-            //Check if the previous block hash is correct
-            if (!currentBlock.getPreviousHash().equals(previousBlock.getHash()))
-                throw new RuntimeException("Invalid previous Hash for block with index " + currentBlock.getId());
-            //Check if the block is mined
-            if (!miningStrategy.validateHash(currentBlock.getHash()))
-                throw new RuntimeException("Unmined block with index " + currentBlock.getId());
+    /**
+     * Check the blocks added or modified after the last validation.
+     * The watermark moves up to the last block before the first fault found.
+     *
+     * @return report of all the faults found in the blocks checked
+     */
+    public ValidationReport validate() {
+        lock.lock();
+        try {
+            // The watermark holds only if its block is unchanged
+            if (validatedHeight >= chain.size() || (validatedHeight >= 0
+                    && !chain.get(validatedHeight).getHash().equals(validatedHash)))
+                this.invalidateFrom(0);
+
+            int from = validatedHeight + 1;
+            ValidationReport report = new ChainValidator(this).validate(from, chain.size());
+            int lastValid = report.isValid() ? chain.size() - 1 : report.getFaults().get(0).getBlockId() - 1;
+            if (lastValid >= from) {
+                this.setWatermark(lastValid, chain.get(lastValid).getHash());
+            }
+            return report;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Check every block of the blockchain in parallel, ignoring the watermark
+     *
+     * @return report of all the faults found
+     */
+    public ValidationReport validateAll() {
+        lock.lock();
+        try {
+            this.invalidateFrom(0);
+            return this.validate();
+        } finally {
+            lock.unlock();
         }
-        return true;
+    }
+
+    /**
+     * Move the validation watermark below a modified block
+     *
+     * @param height id of the first block to validate again
+     */
+    public void invalidateFrom(int height) {
+        lock.lock();
+        try {
+            if (height > validatedHeight)
+                return;
+            this.setWatermark(height - 1, height > 0 ? chain.get(height - 1).getHash() : null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Move the validation watermark, storing it if the chain is persistent
+     *
+     * @param height id of the last valid block
+     * @param hash   hash of the last valid block
+     */
+    private void setWatermark(int height, Hash hash) {
+        this.validatedHeight = height;
+        this.validatedHash = hash;
+        if (storedChain != null)
+            storedChain.getStore().setWatermark(height, hash);
+    }
+
+    /**
+     * Getter of the validation watermark
+     *
+     * @return id of the last block known to be valid, -1 if none
+     */
+    public int getValidatedHeight() {
+        return this.validatedHeight;
     }
 
     /**
@@ -146,7 +588,128 @@ public class Dumbchain implements Serialized {
      */
     @Override
     public String serialize() {
-        return new GsonBuilder().setPrettyPrinting().create().toJson(chain);
+        StringWriter out = new StringWriter();
+        try {
+            this.serialize(out, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Write the blockchain as a JSON array, one block at a time
+     *
+     * @param out    destination, not closed
+     * @param pretty true to indent the JSON, false for a compact output
+     * @throws IOException if the destination cannot be written
+     */
+    public void serialize(Writer out, boolean pretty) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        if (pretty)
+            writer.setIndent("  ");
+        TypeAdapter<Block> adapter = Utils.gson().getAdapter(Block.class);
+        writer.beginArray();
+        for (Block block : this.getChain())
+            adapter.write(writer, block);
+        writer.endArray();
+        writer.flush();
+    }
+
+    /**
+     * Write the blockchain as UTF-8 encoded JSON, one block at a time
+     *
+     * @param out    destination, not closed
+     * @param pretty true to indent the JSON, false for a compact output
+     * @throws IOException if the destination cannot be written
+     */
+    public void serialize(OutputStream out, boolean pretty) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        this.serialize(writer, pretty);
+        writer.flush();
+    }
+
+    /**
+     * Read a blockchain written by {@link #serialize(Writer, boolean)}, one block at a time.
+     * With a store the blocks are written to the disk as they are read, so the chain does not have to fit in memory.
+     * The blocks read are not validated.
+     *
+     * @param in             source, not closed
+     * @param miningStrategy mining algorithm
+     * @param retargeter     difficulty adjustment, null to use the target of the mining algorithm
+     * @param store          empty store receiving the blocks, null to keep the chain in memory
+     * @return blockchain
+     * @throws IOException if the source cannot be read
+     */
+    public static Dumbchain deserialize(Reader in, MiningStrategy miningStrategy, Retargeter retargeter,
+                                        BlockStore store) throws IOException {
+        List<Block> blocks;
+        if (store != null) {
+            if (store.size() > 0)
+                throw new RuntimeException("The store is not empty");
+            store.setWatermark(-1, null);
+            blocks = new StoredChain(store, StoredChain.DEFAULT_CACHE_SIZE);
+        } else {
+            blocks = new ArrayList<>();
+        }
+        JsonReader reader = new JsonReader(in);
+        TypeAdapter<Block> adapter = Utils.gson().getAdapter(Block.class);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            Block block = adapter.read(reader);
+            if (block.getId() != blocks.size())
+                throw new RuntimeException("Invalid block Id " + block.getId());
+            blocks.add(block);
+        }
+        reader.endArray();
+        if (blocks.isEmpty())
+            throw new RuntimeException("The blockchain is empty");
+
+        if (store != null) {
+            ((StoredChain) blocks).flush();
+            return new Dumbchain(miningStrategy, retargeter, store);
+        }
+        Dumbchain blockchain = new Dumbchain(miningStrategy, retargeter);
+        blockchain.setChain(blocks);
+        return blockchain;
+    }
+
+    /**
+     * Read a blockchain written by {@link #serialize(OutputStream, boolean)}, one block at a time.
+     *
+     * @param in             UTF-8 encoded source, not closed
+     * @param miningStrategy mining algorithm
+     * @param retargeter     difficulty adjustment, null to use the target of the mining algorithm
+     * @param store          empty store receiving the blocks, null to keep the chain in memory
+     * @return blockchain
+     * @throws IOException if the source cannot be read
+     * @see #deserialize(Reader, MiningStrategy, Retargeter, BlockStore)
+     */
+    public static Dumbchain deserialize(InputStream in, MiningStrategy miningStrategy, Retargeter retargeter,
+                                        BlockStore store) throws IOException {
+        Reader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        return deserialize(reader, miningStrategy, retargeter, store);
+    }
+
+    /**
+     * Calculate the target of the next block
+     *
+     * @return target
+     */
+    public Target nextTarget() {
+        return this.expectedTarget(chain.size());
+    }
+
+    /**
+     * Calculate the target a block of the chain must store
+     *
+     * @param height id of the block
+     * @return target
+     */
+    Target expectedTarget(int height) {
+        if (retargeter != null)
+            return retargeter.expectedTarget(chain, height);
+        return miningStrategy.getTarget().normalize();
     }
 
     /**
@@ -161,6 +724,58 @@ public class Dumbchain implements Serialized {
             throw new RuntimeException("The blockchain is empty");
     }
 
+    /**
+     * Find a block by hash
+     *
+     * @param hash hash of the block
+     * @return block, null if no block of the chain has the hash
+     */
+    public Block findBlock(Hash hash) {
+        int id = index.blockId(hash);
+        if (id < 0 || id >= chain.size())
+            return null;
+        Block block = chain.get(id);
+        return block.getHash().equals(hash) ? block : null;
+    }
+
+    /**
+     * Find a transaction by hash
+     *
+     * @param hash hash of the transaction
+     * @return location of the transaction, null if it is not in the chain
+     */
+    public TxLocation findTx(Hash hash) {
+        long location = index.txLocation(hash);
+        if (location == HashIndex.MISSING)
+            return null;
+        int id = (int) (location >>> 32);
+        int position = (int) location;
+        if (id >= chain.size())
+            return null;
+        List<Tx> txs = chain.get(id).getTxs();
+        if (position >= txs.size() || !txs.get(position).getHash().equals(hash))
+            return null;
+        return new TxLocation(id, position, txs.get(position));
+    }
+
+    /**
+     * Getter of the state
+     *
+     * @return balances of the accounts after the last block
+     */
+    public StateEngine getState() {
+        return this.state;
+    }
+
+    /**
+     * Getter of the index
+     *
+     * @return block and tx hash indexes
+     */
+    public ChainIndex getIndex() {
+        return this.index;
+    }
+
     public Block getBlock(int id) {
         if (id < 0 || id > chain.size() - 1)
             throw new RuntimeException("Invalid block Id");
@@ -172,7 +787,7 @@ public class Dumbchain implements Serialized {
      *
      * @return hash
      */
-    public String getHashLastBlock() {
+    public Hash getHashLastBlock() {
         return getLastBlock().getHash();
     }
 
@@ -186,21 +801,87 @@ public class Dumbchain implements Serialized {
     }
 
     /**
-     * Setter of the mining strategy
+     * Setter of the mining strategy. The blocks are validated again with the new one.
      *
      * @param mS mining strategy
      */
     public void setMiningStrategy(MiningStrategy mS) {
-        this.miningStrategy = mS;
+        lock.lock();
+        try {
+            this.miningStrategy = mS;
+            this.invalidateFrom(0);
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
-     * Getter of the chain
+     * Getter of the retargeter
      *
-     * @return chain
+     * @return difficulty adjustment, null if not set
      */
-    public List<Block> getChain() {
-        return this.chain;
+    public Retargeter getRetargeter() {
+        return this.retargeter;
+    }
+
+    /**
+     * Setter of the retargeter. The blocks are validated again with the new targets.
+     *
+     * @param retargeter difficulty adjustment, null to use the target of the mining algorithm
+     */
+    public void setRetargeter(Retargeter retargeter) {
+        lock.lock();
+        try {
+            this.retargeter = retargeter;
+            this.invalidateFrom(0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Getter of the merkle tree builder
+     *
+     * @return merkle tree builder used to validate the transactions
+     */
+    public MerkleTreeBuilder getMerkleTreeBuilder() {
+        return this.merkleTreeBuilder;
+    }
+
+    /**
+     * Setter of the merkle tree builder
+     *
+     * @param merkleTreeBuilder merkle tree builder used to validate the transactions
+     */
+    public void setMerkleTreeBuilder(MerkleTreeBuilder merkleTreeBuilder) {
+        this.merkleTreeBuilder = merkleTreeBuilder;
+    }
+
+    /**
+     * Getter of the signature verifier
+     *
+     * @return verifier of the signed transactions
+     */
+    public SignatureVerifier getSignatureVerifier() {
+        return this.signatureVerifier;
+    }
+
+    /**
+     * Setter of the signature verifier
+     *
+     * @param signatureVerifier verifier of the signed transactions
+     */
+    public void setSignatureVerifier(SignatureVerifier signatureVerifier) {
+        this.signatureVerifier = signatureVerifier;
+    }
+
+    /**
+     * Getter of the chain. The view does not change and can be scanned without locking while the chain changes.
+     *
+     * @return last version of the chain published
+     */
+    public ChainView getChain() {
+        return this.view.get();
     }
 
     /**
@@ -209,7 +890,105 @@ public class Dumbchain implements Serialized {
      * @param chain chain
      */
     public void setChain(List<Block> chain) {
-        this.chain = chain;
+        lock.lock();
+        try {
+            // The blocks being mined are no longer part of the chain
+            this.miningStrategy.cancel();
+            List<Block> previousChain = listeners.isEmpty() ? null : this.createSnapshot().getState();
+            List<Block> replaced = previousChain != null ? previousChain : this.chain.snapshot();
+            BitSet changed = new BitSet();
+            // A view holds a snapshot, which is restored faster than a list
+            this.chain.replaceWith(chain instanceof ChainView ? ((ChainView) chain).getBlocks() : chain, changed::set);
+            // Undo the transfers of the blocks replaced, then apply the ones of the new blocks
+            for (int id = changed.previousSetBit(replaced.size() - 1); id >= 0; id = changed.previousSetBit(id - 1))
+                state.revert(replaced.get(id).getTxs());
+            // Only the blocks changed have to be indexed and validated again
+            for (int id = changed.nextSetBit(0); id >= 0 && id < this.chain.size(); id = changed.nextSetBit(id + 1)) {
+                Block block = this.chain.get(id);
+                if (!block.isSealed())
+                    block.setSeal(seal);
+                index.index(block);
+                state.replay(block.getTxs());
+            }
+            if (!changed.isEmpty()) {
+                this.invalidateFrom(changed.nextSetBit(0));
+                this.commit(ChainEvent.chainReplaced(changed.nextSetBit(0), previousChain));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Run an action while no other thread changes the chain
+     *
+     * @param action action
+     */
+    void withLock(Runnable action) {
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Getter of the block threshold
+     *
+     * @return the max number of tx stored in a block
+     */
+    public int getBlockThreshold() {
+        return this.blockThreshold;
+    }
+
+    /**
+     * Setter of the block threshold
+     *
+     * @param blockThreshold the max number of tx stored in a block
+     */
+    public void setBlockThreshold(int blockThreshold) {
+        if (blockThreshold < 1)
+            throw new RuntimeException("Invalid block threshold " + blockThreshold);
+        this.blockThreshold = blockThreshold;
+    }
+
+    /**
+     * Register a receiver of the changes made to the chain.
+     * The listeners are called by the writing thread while it holds the chain.
+     *
+     * @param listener listener
+     */
+    public void addListener(ChainListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregister a receiver of the changes
+     *
+     * @param listener listener
+     */
+    public void removeListener(ChainListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Publish the chain changed and notify the listeners. The readers see the change before the listeners.
+     *
+     * @param event change
+     */
+    private void commit(ChainEvent event) {
+        this.publish();
+        for (ChainListener listener : listeners)
+            listener.onEvent(event);
+    }
+
+    /**
+     * Publish the current version of the chain
+     */
+    private void publish() {
+        ChainView current = view.get();
+        view.set(new ChainView(current == null ? 0 : current.getVersion() + 1, chain.snapshot()));
     }
 
     /**
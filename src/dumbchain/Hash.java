@@ -0,0 +1,217 @@
+package dumbchain;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Immutable 256 bit hash value.
+ * The digest is stored as four big-endian words, the hex form is only built when the hash is displayed.
+ */
+public final class Hash implements Comparable<Hash> {
+
+    // Size of the hash in bytes
+    public static final int BYTES = 32;
+    // The all-zero hash, used as previous hash of the genesis block and as root of an empty tree
+    public static final Hash ZERO = new Hash(0, 0, 0, 0);
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final long w0;
+    private final long w1;
+    private final long w2;
+    private final long w3;
+
+    Hash(long w0, long w1, long w2, long w3) {
+        this.w0 = w0;
+        this.w1 = w1;
+        this.w2 = w2;
+        this.w3 = w3;
+    }
+
+    /**
+     * Creates a hash from a 32 byte digest.
+     *
+     * @param digest digest
+     * @return hash
+     */
+    public static Hash of(byte[] digest) {
+        return of(digest, 0);
+    }
+
+    /**
+     * Creates a hash reading 32 bytes of an array from a given offset.
+     *
+     * @param src    source array
+     * @param offset first byte of the hash
+     * @return hash
+     */
+    public static Hash of(byte[] src, int offset) {
+        if (src.length - offset < BYTES)
+            throw new RuntimeException("Invalid hash length");
+        return new Hash(readLong(src, offset), readLong(src, offset + 8),
+                readLong(src, offset + 16), readLong(src, offset + 24));
+    }
+
+    /**
+     * Creates a hash reading the next 32 bytes of a buffer.
+     *
+     * @param src source buffer
+     * @return hash
+     */
+    public static Hash read(ByteBuffer src) {
+        return new Hash(src.getLong(), src.getLong(), src.getLong(), src.getLong());
+    }
+
+    /**
+     * Parse an hex encoded hash.
+     *
+     * @param hex 64 hex digits
+     * @return hash
+     */
+    public static Hash fromHex(String hex) {
+        if (hex.length() != BYTES * 2)
+            throw new RuntimeException("Invalid hash: " + hex);
+        return new Hash(parseWord(hex, 0), parseWord(hex, 16), parseWord(hex, 32), parseWord(hex, 48));
+    }
+
+    private static long parseWord(String hex, int from) {
+        return Long.parseUnsignedLong(hex.substring(from, from + 16), 16);
+    }
+
+    private static long readLong(byte[] src, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++)
+            value = (value << 8) | (src[offset + i] & 0xff);
+        return value;
+    }
+
+    /**
+     * Word getter
+     *
+     * @param index word index, 0 is the most significant
+     * @return word
+     */
+    public long word(int index) {
+        switch (index) {
+            case 0:
+                return w0;
+            case 1:
+                return w1;
+            case 2:
+                return w2;
+            case 3:
+                return w3;
+            default:
+                throw new IndexOutOfBoundsException("Invalid word index " + index);
+        }
+    }
+
+    /**
+     * Count the leading zero bits of the hash
+     *
+     * @return number of leading zero bits (256 for the zero hash)
+     */
+    public int leadingZeroBits() {
+        if (w0 != 0)
+            return Long.numberOfLeadingZeros(w0);
+        if (w1 != 0)
+            return 64 + Long.numberOfLeadingZeros(w1);
+        if (w2 != 0)
+            return 128 + Long.numberOfLeadingZeros(w2);
+        return 192 + Long.numberOfLeadingZeros(w3);
+    }
+
+    /**
+     * Write the hash into a buffer
+     *
+     * @param dst destination buffer
+     */
+    public void writeTo(ByteBuffer dst) {
+        dst.putLong(w0).putLong(w1).putLong(w2).putLong(w3);
+    }
+
+    /**
+     * Write the hash into an array
+     *
+     * @param dst    destination array
+     * @param offset first byte written
+     */
+    public void writeTo(byte[] dst, int offset) {
+        writeLong(dst, offset, w0);
+        writeLong(dst, offset + 8, w1);
+        writeLong(dst, offset + 16, w2);
+        writeLong(dst, offset + 24, w3);
+    }
+
+    private static void writeLong(byte[] dst, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            dst[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    /**
+     * Bytes getter
+     *
+     * @return a new array with the digest
+     */
+    public byte[] toBytes() {
+        byte[] bytes = new byte[BYTES];
+        writeTo(bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * Hex encoding of the hash
+     *
+     * @return 64 lowercase hex digits
+     */
+    public String toHex() {
+        char[] out = new char[BYTES * 2];
+        appendWord(out, 0, w0);
+        appendWord(out, 16, w1);
+        appendWord(out, 32, w2);
+        appendWord(out, 48, w3);
+        return new String(out);
+    }
+
+    private static void appendWord(char[] out, int offset, long word) {
+        for (int i = 15; i >= 0; i--) {
+            out[offset + i] = HEX[(int) (word & 0xf)];
+            word >>>= 4;
+        }
+    }
+
+    @Override
+    public int compareTo(Hash other) {
+        int c = Long.compareUnsigned(w0, other.w0);
+        if (c == 0)
+            c = Long.compareUnsigned(w1, other.w1);
+        if (c == 0)
+            c = Long.compareUnsigned(w2, other.w2);
+        if (c == 0)
+            c = Long.compareUnsigned(w3, other.w3);
+        return c;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof Hash))
+            return false;
+        Hash h = (Hash) o;
+        return w0 == h.w0 && w1 == h.w1 && w2 == h.w2 && w3 == h.w3;
+    }
+
+    @Override
+    public int hashCode() {
+        // The words are already uniformly distributed
+        return (int) (w3 ^ (w3 >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return toHex();
+    }
+
+}
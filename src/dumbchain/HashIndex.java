@@ -0,0 +1,46 @@
+package dumbchain;
+
+/**
+ * Map from hashes to non negative long values.
+ * Implementations are not thread safe.
+ */
+public interface HashIndex {
+
+    // Value returned for the hashes not in the index
+    long MISSING = -1;
+
+    /**
+     * Get the value of a hash
+     *
+     * @param key hash
+     * @return value, {@link #MISSING} if the hash is not in the index
+     */
+    long get(Hash key);
+
+    /**
+     * Set the value of a hash, replacing the previous one
+     *
+     * @param key   hash
+     * @param value non negative value
+     */
+    void put(Hash key, long value);
+
+    /**
+     * Remove a hash
+     *
+     * @param key hash
+     */
+    void remove(Hash key);
+
+    /**
+     * Number of hashes in the index
+     *
+     * @return size
+     */
+    int size();
+
+    /**
+     * Remove every hash
+     */
+    void clear();
+}
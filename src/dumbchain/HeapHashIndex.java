@@ -0,0 +1,40 @@
+package dumbchain;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hash index kept on the heap
+ */
+public class HeapHashIndex implements HashIndex {
+
+    private final Map<Hash, Long> entries = new HashMap<>();
+
+    @Override
+    public long get(Hash key) {
+        Long value = entries.get(key);
+        return value == null ? MISSING : value;
+    }
+
+    @Override
+    public void put(Hash key, long value) {
+        if (value < 0)
+            throw new RuntimeException("Invalid index value " + value);
+        entries.put(key, value);
+    }
+
+    @Override
+    public void remove(Hash key) {
+        entries.remove(key);
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+    }
+}
@@ -0,0 +1,226 @@
+package dumbchain;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of the transactions waiting to be stored in a block.
+ * <p>
+ * The transactions are keyed by hash, so a duplicate is rejected in constant time. They are taken in
+ * arrival order, or by priority when a comparator is given (ties in arrival order).
+ * The capacity bounds the memory: when the pool is full {@link #offer(Tx)} rejects the transaction
+ * and {@link #put(Tx)} waits until a block takes some transactions out.
+ * The transactions of a block that could not be created are put back ahead of the others.
+ */
+public class Mempool {
+
+    // Default maximum number of transactions waiting
+    public static final int DEFAULT_CAPACITY = 100_000;
+
+    private final int capacity;
+    private final ConcurrentHashMap<Hash, Entry> txs = new ConcurrentHashMap<>();
+    private final Queue<Entry> order;
+    // One permit per free slot, negative while the transactions put back exceed the capacity
+    private final Slots free;
+    private final AtomicLong arrivals = new AtomicLong();
+    // Arrival numbers of the transactions put back, below the ones of the transactions added
+    private final AtomicLong returns = new AtomicLong();
+
+    /**
+     * Creates a pool taking the transactions in arrival order
+     *
+     * @param capacity maximum number of transactions waiting
+     */
+    public Mempool(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * Creates a pool
+     *
+     * @param capacity maximum number of transactions waiting
+     * @param priority order of the transactions, the first ones are taken first; null for arrival order
+     */
+    public Mempool(int capacity, Comparator<Tx> priority) {
+        if (capacity < 1)
+            throw new RuntimeException("Invalid capacity " + capacity);
+        this.capacity = capacity;
+        this.free = new Slots(capacity);
+        if (priority == null) {
+            this.order = new ConcurrentLinkedDeque<>();
+        } else {
+            Comparator<Entry> byPriority = (a, b) -> priority.compare(a.tx, b.tx);
+            this.order = new PriorityBlockingQueue<>(16, byPriority.thenComparingLong(e -> e.arrival));
+        }
+    }
+
+    /**
+     * Add a transaction if there is room for it
+     *
+     * @param tx tx
+     * @return false if the transaction is already in the pool or the pool is full
+     */
+    public boolean offer(Tx tx) {
+        checkTx(tx);
+        if (txs.containsKey(tx.getHash()) || !free.tryAcquire())
+            return false;
+        return this.insert(tx);
+    }
+
+    /**
+     * Add a transaction, waiting for room if the pool is full
+     *
+     * @param tx      tx
+     * @param timeout maximum time to wait
+     * @param unit    unit of the timeout
+     * @return false if the transaction is already in the pool or there was no room in time
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public boolean offer(Tx tx, long timeout, TimeUnit unit) throws InterruptedException {
+        checkTx(tx);
+        if (txs.containsKey(tx.getHash()) || !free.tryAcquire(timeout, unit))
+            return false;
+        return this.insert(tx);
+    }
+
+    /**
+     * Add a transaction, waiting for room if the pool is full
+     *
+     * @param tx tx
+     * @return false if the transaction is already in the pool
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public boolean put(Tx tx) throws InterruptedException {
+        checkTx(tx);
+        if (txs.containsKey(tx.getHash()))
+            return false;
+        free.acquire();
+        return this.insert(tx);
+    }
+
+    /**
+     * Take the first transactions out of the pool, e.g. to fill a block
+     *
+     * @param max maximum number of transactions taken
+     * @return transactions, in order
+     */
+    public List<Tx> take(int max) {
+        List<Tx> taken = new ArrayList<>(Math.min(max, txs.size()));
+        Entry entry;
+        while (taken.size() < max && (entry = order.poll()) != null) {
+            txs.remove(entry.tx.getHash(), entry);
+            taken.add(entry.tx);
+        }
+        free.release(taken.size());
+        return taken;
+    }
+
+    /**
+     * Put back transactions taken out of the pool, e.g. when their block could not be created.
+     * They are taken again before the ones waiting, in the same order. They are put back even if the pool
+     * is full meanwhile: the new transactions wait until it is below its capacity again.
+     *
+     * @param taken transactions, in order
+     */
+    public void putBack(List<? extends Tx> taken) {
+        long first = returns.addAndGet(-taken.size());
+        List<Entry> entries = new ArrayList<>(taken.size());
+        for (int i = 0; i < taken.size(); i++) {
+            Tx tx = taken.get(i);
+            checkTx(tx);
+            Entry entry = new Entry(tx, first + i);
+            // A copy may have been added in the meantime
+            if (txs.putIfAbsent(tx.getHash(), entry) == null)
+                entries.add(entry);
+        }
+        free.reduce(entries.size());
+        if (order instanceof Deque) {
+            Deque<Entry> queue = (Deque<Entry>) order;
+            for (int i = entries.size() - 1; i >= 0; i--)
+                queue.addFirst(entries.get(i));
+        } else {
+            order.addAll(entries);
+        }
+    }
+
+    /**
+     * Check if a transaction is waiting
+     *
+     * @param hash hash of the transaction
+     * @return true if it is in the pool
+     */
+    public boolean contains(Hash hash) {
+        return txs.containsKey(hash);
+    }
+
+    /**
+     * Number of transactions waiting
+     *
+     * @return size
+     */
+    public int size() {
+        return txs.size();
+    }
+
+    /**
+     * Capacity getter
+     *
+     * @return maximum number of transactions waiting
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    private boolean insert(Tx tx) {
+        Entry entry = new Entry(tx, arrivals.getAndIncrement());
+        if (txs.putIfAbsent(tx.getHash(), entry) != null) {
+            // Added by another thread in the meantime
+            free.release();
+            return false;
+        }
+        order.add(entry);
+        return true;
+    }
+
+    private static void checkTx(Tx tx) {
+        if (tx == null)
+            throw new RuntimeException("Invalid TX (null)");
+    }
+
+    /**
+     * Free slots of the pool, which can be taken below zero
+     */
+    private static final class Slots extends Semaphore {
+        private static final long serialVersionUID = 1L;
+
+        private Slots(int permits) {
+            super(permits);
+        }
+
+        private void reduce(int slots) {
+            this.reducePermits(slots);
+        }
+    }
+
+    /**
+     * Transaction waiting, with its arrival number
+     */
+    private static final class Entry {
+        private final Tx tx;
+        private final long arrival;
+
+        private Entry(Tx tx, long arrival) {
+            this.tx = tx;
+            this.arrival = arrival;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package dumbchain;
+
+import java.util.Arrays;
+
+/**
+ * Append-only Merkle tree keeping only its right edge.
+ * For every level it stores the root of the last complete subtree, so appending a leaf and computing
+ * the root both cost O(log n) hashes. The root is the same of {@link Utils#createMerkleTree(java.util.List)}:
+ * an odd node at the end of a level is paired with itself.
+ */
+public class MerkleAccumulator {
+
+    // frontier[i] is the root of a complete subtree of 2^i leaves, valid when the bit i of count is set
+    private Hash[] frontier;
+    private long count;
+
+    /**
+     * Creates an empty accumulator
+     */
+    public MerkleAccumulator() {
+        this.frontier = new Hash[8];
+    }
+
+    /**
+     * Creates a copy of an accumulator
+     *
+     * @param other accumulator copied
+     */
+    public MerkleAccumulator(MerkleAccumulator other) {
+        this.frontier = other.frontier.clone();
+        this.count = other.count;
+    }
+
+    /**
+     * Append a leaf
+     *
+     * @param leaf leaf hash
+     */
+    public void add(Hash leaf) {
+        Hash carry = leaf;
+        int level = 0;
+        // Merge the complete subtrees of the same size, like a binary counter
+        while ((count >>> level & 1) != 0) {
+            carry = Utils.sha256(frontier[level], carry);
+            frontier[level] = null;
+            level++;
+        }
+        if (level == frontier.length)
+            frontier = Arrays.copyOf(frontier, frontier.length * 2);
+        frontier[level] = carry;
+        count++;
+    }
+
+    /**
+     * Calculate the root of the tree
+     *
+     * @return root, the zero hash if the tree is empty
+     */
+    public Hash root() {
+        if (count == 0)
+            return Hash.ZERO;
+        // Node at the right end of the current level not belonging to a complete subtree
+        Hash partial = null;
+        for (int level = 0; ; level++) {
+            long complete = count >>> level;
+            boolean odd = (complete & 1) != 0;
+            if (complete + (partial == null ? 0 : 1) == 1)
+                return partial != null ? partial : frontier[level];
+            if (partial != null)
+                partial = odd ? Utils.sha256(frontier[level], partial) : Utils.sha256(partial, partial);
+            else if (odd)
+                partial = Utils.sha256(frontier[level], frontier[level]);
+        }
+    }
+
+    /**
+     * Size getter
+     *
+     * @return number of leaves
+     */
+    public long size() {
+        return this.count;
+    }
+
+}
@@ -0,0 +1,132 @@
+package dumbchain;
+
+/**
+ * Inclusion proof of a transaction in a block: the siblings of the path from the leaf to the merkle root.
+ * A proof is verified with O(log n) hashes, without the other transactions of the block.
+ * The last node of a level with an odd size is paired with itself, so the proof holds the number of transactions:
+ * a position past the end would otherwise lead to the same root as the last transaction.
+ */
+public final class MerkleProof implements Serialized {
+
+    private final Hash leaf;        // hash of the proven transaction
+    private final int index;        // position of the transaction in the block
+    private final int count;        // number of transactions in the block
+    private final Hash[] siblings;  // sibling of the node at each level, from the leaves up
+
+    /**
+     * Creates a new proof
+     *
+     * @param leaf     hash of the transaction
+     * @param index    position of the transaction in the block
+     * @param count    number of transactions in the block
+     * @param siblings siblings of the path, from the leaves up
+     */
+    public MerkleProof(Hash leaf, int index, int count, Hash[] siblings) {
+        if (index < 0 || index >= count)
+            throw new RuntimeException("Invalid leaf index " + index);
+        this.leaf = leaf;
+        this.index = index;
+        this.count = count;
+        this.siblings = siblings.clone();
+    }
+
+    /**
+     * Check that a transaction is included in a tree.
+     * The number of transactions is the one of the proof: a proof coming from an untrusted source must be
+     * checked against the number stored in the block header, see {@link #verify(Hash, MerkleProof, Hash, int)}.
+     *
+     * @param txHash     hash of the transaction
+     * @param proof      inclusion proof
+     * @param merkleRoot merkle root of the block
+     * @return true if the proof is valid, false otherwise
+     */
+    public static boolean verify(Hash txHash, MerkleProof proof, Hash merkleRoot) {
+        return verify(txHash, proof, merkleRoot, proof.count);
+    }
+
+    /**
+     * Check that a transaction is included in a block
+     *
+     * @param txHash     hash of the transaction
+     * @param proof      inclusion proof
+     * @param merkleRoot merkle root of the block
+     * @param txCount    number of transactions of the block
+     * @return true if the proof is valid, false otherwise
+     */
+    public static boolean verify(Hash txHash, MerkleProof proof, Hash merkleRoot, int txCount) {
+        return proof.count == txCount && proof.leaf.equals(txHash) && merkleRoot.equals(proof.computeRoot());
+    }
+
+    /**
+     * Calculate the root the proof leads to
+     *
+     * @return merkle root, null if the path does not fit the index and the number of transactions
+     */
+    public Hash computeRoot() {
+        // Deserialized proofs are not checked by the constructor
+        if (index < 0 || index >= count)
+            return null;
+        Hash node = leaf;
+        int position = index;
+        int size = count;
+        for (Hash sibling : siblings) {
+            if (size <= 1)
+                return null;
+            // The last node of an odd level is its own sibling
+            if ((position ^ 1) >= size && !sibling.equals(node))
+                return null;
+            // The even positions are left children
+            node = (position & 1) == 0 ? Utils.sha256(node, sibling) : Utils.sha256(sibling, node);
+            position >>>= 1;
+            size = (size + 1) / 2;
+        }
+        // The path must end at the root
+        return size == 1 ? node : null;
+    }
+
+    /**
+     * Serialize the proof
+     *
+     * @return JSON
+     */
+    @Override
+    public String serialize() {
+        return Utils.gson().toJson(this);
+    }
+
+    /**
+     * Leaf getter
+     *
+     * @return hash of the proven transaction
+     */
+    public Hash getLeaf() {
+        return this.leaf;
+    }
+
+    /**
+     * Index getter
+     *
+     * @return position of the transaction in the block
+     */
+    public int getIndex() {
+        return this.index;
+    }
+
+    /**
+     * Count getter
+     *
+     * @return number of transactions in the block
+     */
+    public int getCount() {
+        return this.count;
+    }
+
+    /**
+     * Siblings getter
+     *
+     * @return siblings of the path, from the leaves up
+     */
+    public Hash[] getSiblings() {
+        return this.siblings.clone();
+    }
+}
@@ -0,0 +1,193 @@
+package dumbchain;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes merkle roots over a flat array of binary hashes.
+ * Each level is hashed in place from the previous one; the levels with more pairs than the threshold are
+ * split across a ForkJoinPool. The root is the same of {@link Utils#createMerkleTree(List)}.
+ */
+public class MerkleTreeBuilder {
+
+    // Default number of pairs hashed by a single task
+    public static final int DEFAULT_THRESHOLD = 1024;
+    // Builder hashing every level in the caller thread
+    public static final MerkleTreeBuilder SEQUENTIAL = new MerkleTreeBuilder(null, Integer.MAX_VALUE);
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    /**
+     * Creates a new builder
+     *
+     * @param pool      pool used for the large levels, null to hash everything in the caller thread
+     * @param threshold minimum number of pairs of a level to split it in tasks
+     */
+    public MerkleTreeBuilder(ForkJoinPool pool, int threshold) {
+        if (threshold < 1)
+            throw new RuntimeException("Invalid threshold: " + threshold);
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Creates a builder using the common ForkJoinPool
+     *
+     * @return parallel builder
+     */
+    public static MerkleTreeBuilder parallel() {
+        return new MerkleTreeBuilder(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Calculate the merkle root of a list of transactions
+     *
+     * @param txs transactions
+     * @return root, the zero hash if there are no transactions
+     */
+    public Hash root(List<? extends Tx> txs) {
+        byte[] level = new byte[txs.size() * Hash.BYTES];
+        int i = 0;
+        for (Tx tx : txs) {
+            tx.getHash().writeTo(level, i);
+            i += Hash.BYTES;
+        }
+        return root(level, txs.size());
+    }
+
+    /**
+     * Calculate the merkle root of a flat array of leaves.
+     * The array is overwritten with the inner levels of the tree.
+     *
+     * @param leaves leaves, 32 bytes each
+     * @param count  number of leaves
+     * @return root, the zero hash if there are no leaves
+     */
+    public Hash root(byte[] leaves, int count) {
+        if (count == 0)
+            return Hash.ZERO;
+        if (pool == null || (count + 1) / 2 <= threshold) {
+            // Sequential levels are hashed in place
+            for (int size = count; size > 1; size = (size + 1) / 2)
+                hashPairs(leaves, size, leaves, 0, (size + 1) / 2);
+            return Hash.of(leaves, 0);
+        }
+        // Concurrent tasks would overwrite nodes still to be read: alternate two buffers
+        byte[] level = leaves;
+        byte[] next = new byte[(count + 1) / 2 * Hash.BYTES];
+        for (int size = count; size > 1; size = (size + 1) / 2) {
+            hashLevel(level, size, next);
+            byte[] swap = level;
+            level = next;
+            next = swap;
+        }
+        return Hash.of(level, 0);
+    }
+
+    /**
+     * Build the inclusion proof of a transaction
+     *
+     * @param txs   transactions of the block
+     * @param index position of the proven transaction
+     * @return proof
+     */
+    public MerkleProof prove(List<? extends Tx> txs, int index) {
+        int count = txs.size();
+        if (index < 0 || index >= count)
+            throw new RuntimeException("Invalid transaction index " + index);
+        byte[] level = new byte[count * Hash.BYTES];
+        int offset = 0;
+        for (Tx tx : txs) {
+            tx.getHash().writeTo(level, offset);
+            offset += Hash.BYTES;
+        }
+
+        List<Hash> siblings = new ArrayList<>();
+        int position = index;
+        byte[] next = new byte[(count + 1) / 2 * Hash.BYTES];
+        for (int size = count; size > 1; size = (size + 1) / 2) {
+            // An odd node at the end of the level is its own sibling
+            int sibling = Math.min(position ^ 1, size - 1);
+            siblings.add(Hash.of(level, sibling * Hash.BYTES));
+            hashLevel(level, size, next);
+            byte[] swap = level;
+            level = next;
+            next = swap;
+            position >>>= 1;
+        }
+        return new MerkleProof(txs.get(index).getHash(), index, count, siblings.toArray(new Hash[0]));
+    }
+
+    /**
+     * Hash the pairs of a level
+     *
+     * @param level source level
+     * @param size  number of nodes of the level
+     * @param next  destination of the parent level
+     */
+    void hashLevel(byte[] level, int size, byte[] next) {
+        int pairs = (size + 1) / 2;
+        if (pool == null || pairs <= threshold)
+            hashPairs(level, size, next, 0, pairs);
+        else
+            pool.invoke(new LevelTask(level, size, next, 0, pairs));
+    }
+
+    /**
+     * Hash a range of pairs of a level. The parent of the pair i is written in the slot i:
+     * when hashing sequentially the destination can be the level itself, since the following pairs never read it.
+     */
+    private static void hashPairs(byte[] level, int size, byte[] next, int from, int to) {
+        MessageDigest md = Utils.digest();
+        try {
+            for (int pair = from; pair < to; pair++) {
+                int left = pair * 2 * Hash.BYTES;
+                if (pair * 2 + 1 < size) {
+                    md.update(level, left, Hash.BYTES * 2);
+                } else {
+                    // An odd node is paired with itself
+                    md.update(level, left, Hash.BYTES);
+                    md.update(level, left, Hash.BYTES);
+                }
+                md.digest(next, pair * Hash.BYTES, Hash.BYTES);
+            }
+        } catch (DigestException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Task hashing a range of pairs of a level
+     */
+    private class LevelTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final byte[] level;
+        private final int size;
+        private final byte[] next;
+        private final int from;
+        private final int to;
+
+        LevelTask(byte[] level, int size, byte[] next, int from, int to) {
+            this.level = level;
+            this.size = size;
+            this.next = next;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                hashPairs(level, size, next, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new LevelTask(level, size, next, from, middle), new LevelTask(level, size, next, middle, to));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package dumbchain;
+
+/**
+ * Result of a mining job.
+ */
+public class MinedBlock {
+
+    private final Block block;
+    private final int nonce;
+    private final Hash hash;
+    private final long attempts;
+    private final long elapsedNanos;
+
+    /**
+     * Creates a new result
+     *
+     * @param block        mined block
+     * @param attempts     number of hashes calculated
+     * @param elapsedNanos duration of the job
+     */
+    MinedBlock(Block block, long attempts, long elapsedNanos) {
+        this.block = block;
+        this.nonce = block.getNonce();
+        this.hash = block.getHash();
+        this.attempts = attempts;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Block getter
+     *
+     * @return mined block
+     */
+    public Block getBlock() {
+        return this.block;
+    }
+
+    /**
+     * Nonce getter
+     *
+     * @return nonce found
+     */
+    public int getNonce() {
+        return this.nonce;
+    }
+
+    /**
+     * Hash getter
+     *
+     * @return hash of the mined block
+     */
+    public Hash getHash() {
+        return this.hash;
+    }
+
+    /**
+     * Attempts getter
+     *
+     * @return number of hashes calculated
+     */
+    public long getAttempts() {
+        return this.attempts;
+    }
+
+    /**
+     * Elapsed time getter
+     *
+     * @return duration of the job in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+
+    /**
+     * Average hashrate of the job
+     *
+     * @return hashes per second
+     */
+    public double getHashrate() {
+        return elapsedNanos == 0 ? 0 : attempts * 1e9 / elapsedNanos;
+    }
+}
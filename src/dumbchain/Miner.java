@@ -1,16 +1,25 @@
 package dumbchain;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
- * Emulates a miner for the blockchain
+ * Emulates a miner for the blockchain.
+ * A block links to the hash of the previous one, so the next block is created only once the previous one
+ * is mined and stored: the blocks are created and mined one at a time.
  */
 public class Miner {
 
     public Dumbchain blockchain;
     //Transaction pool
-    private List<Tx> txPool = new ArrayList<>();
+    private final Mempool txPool;
+    // Block mined in background, completed once stored in the chain
+    private CompletableFuture<?> sealing;
 
     /**
      * Creates a new miner
@@ -18,24 +27,161 @@ public class Miner {
      * @param blockchain blockchain
      */
     public Miner(Dumbchain blockchain) {
+        this(blockchain, new Mempool(Mempool.DEFAULT_CAPACITY));
+    }
+
+    /**
+     * Creates a new miner
+     *
+     * @param blockchain blockchain
+     * @param txPool     pool of the transactions waiting for a block
+     */
+    public Miner(Dumbchain blockchain, Mempool txPool) {
         this.blockchain = blockchain;
+        this.txPool = txPool;
     }
 
     /**
-     * Insert a new Tx in the blockchain if it's possible
+     * Insert a new Tx in the blockchain if it's possible, waiting for the block to be mined
      *
      * @param tx tx
      */
     public void mine(Tx tx) {
-        txPool.add(tx);
-        //If there are enough transactions , mine the block
-        if (txPool.size() == Dumbchain.BLOCK_THRESHOLD) {
-            blockchain.createBlock();
-            for (Tx t : txPool)
-                blockchain.getLastBlock().addTx(t);
-            blockchain.getMiningStrategy().mine(blockchain.getLastBlock());
-            txPool.clear();
+        this.pool(tx);
+        synchronized (this) {
+            Block block = this.nextBlock();
+            if (block != null)
+                this.seal(block);
+        }
+    }
+
+    /**
+     * Insert many Txs in the blockchain, waiting for the blocks to be mined.
+     * The signatures are verified in parallel first, then the Txs go through the pool: every time it holds
+     * enough of them a block is filled at once and mined before the next one is created.
+     * The Txs left in the pool wait for the next ones.
+     *
+     * @param txs txs
+     */
+    public void addTxs(Collection<? extends Tx> txs) {
+        blockchain.getSignatureVerifier().checkAll(txs);
+        for (Tx tx : txs) {
+            this.pool(tx);
+            // Make room as soon as a block can be filled, the pool may be smaller than the batch
+            synchronized (this) {
+                Block block;
+                while ((block = this.nextBlock()) != null)
+                    this.seal(block);
+            }
+        }
+    }
+
+    /**
+     * Add a Tx to the pool. When the pool is full its transactions are stored in a new block
+     * that is mined in background, while the pool keeps accepting transactions.
+     * The next block waits for this one to be mined and stored.
+     *
+     * @param tx tx
+     * @return the job mining the new block, null if the pool is not full yet
+     */
+    public MiningJob submit(Tx tx) {
+        this.pool(tx);
+        synchronized (this) {
+            Block block = this.nextBlock();
+            if (block == null)
+                return null;
+            return this.sealAsync(block);
+        }
+    }
+
+    /**
+     * Verify a Tx and add it to the pool, waiting for room if it is full.
+     * A transfer is checked against the state, ignoring the transfers waiting before it.
+     *
+     * @param tx tx
+     */
+    private void pool(Tx tx) {
+        if (tx == null)
+            throw new RuntimeException("Invalid TX (null)");
+        if (blockchain.findTx(tx.getHash()) != null)
+            throw new RuntimeException("TX " + tx.getHash() + " is already in the blockchain");
+        if (!blockchain.getSignatureVerifier().verify(tx))
+            throw new RuntimeException("Invalid signature for TX " + tx.getHash());
+        Transfer transfer = Transfer.of(tx);
+        String fault = transfer == null ? null : blockchain.getState().checkPending(transfer);
+        if (fault != null)
+            throw new RuntimeException("Invalid transfer " + tx.getHash() + ": " + fault);
+        try {
+            if (!txPool.put(tx))
+                throw new RuntimeException("TX " + tx.getHash() + " is already in the pool");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the pool", e);
+        }
+    }
+
+    /**
+     * Move the first transactions of the pool into a new block, if there are enough of them.
+     * If the block cannot be created, the transactions are put back in the pool except the invalid transfers.
+     * Called holding the lock of the miner, once the block mined in background is stored.
+     *
+     * @return the new block to mine, null if the pool has not enough transactions yet
+     */
+    private Block nextBlock() {
+        // A pool smaller than the threshold would never fill a block
+        int threshold = Math.min(blockchain.getBlockThreshold(), txPool.getCapacity());
+        //If there are enough transactions , create the block
+        if (txPool.size() < threshold)
+            return null;
+        // The new block links to the hash of the previous one, which changes when it is mined
+        this.awaitSealing();
+        List<Tx> blockTxs = txPool.take(threshold);
+        try {
+            return blockchain.createBlock(blockTxs);
+        } catch (RuntimeException e) {
+            txPool.putBack(this.applicable(blockTxs));
+            throw e;
+        }
+    }
+
+    /**
+     * Wait for the block mined in background to be stored in the chain.
+     * A failure is left to the caller of the job: the block stays unmined.
+     */
+    private void awaitSealing() {
+        if (sealing == null)
+            return;
+        try {
+            sealing.join();
+        } catch (CompletionException | CancellationException e) {
+            // Reported by the job
         }
+        sealing = null;
+    }
+
+    /**
+     * Select the transactions that can still be stored, in order: a transfer is dropped if it cannot be
+     * applied after the ones before it, unless it waits for a transfer of the same sender still in the pool
+     *
+     * @param txs transactions
+     * @return transactions kept
+     */
+    private List<Tx> applicable(List<Tx> txs) {
+        StateEngine trial = blockchain.getState().copy();
+        List<Tx> kept = new ArrayList<>(txs.size());
+        for (Tx tx : txs) {
+            Transfer transfer = Transfer.of(tx);
+            if (transfer != null) {
+                try {
+                    trial.apply(Collections.singletonList(tx));
+                } catch (RuntimeException e) {
+                    if (trial.checkPending(transfer) != null)
+                        continue;
+                }
+            }
+            kept.add(tx);
+        }
+        return kept;
     }
 
     /**
@@ -44,11 +190,58 @@ public class Miner {
      * @param block block to mine
      */
     public void mineBlock(Block block) {
+        this.checkUnmined(block);
+        this.seal(block);
+    }
 
-        if (blockchain.getMiningStrategy().validateHash(block.getHash()))
+    /**
+     * Start mining the block in background
+     *
+     * @param block block to mine
+     * @return the running job
+     */
+    public synchronized MiningJob mineBlockAsync(Block block) {
+        this.checkUnmined(block);
+        return this.sealAsync(block);
+    }
+
+    /**
+     * Check that a block still has to be mined
+     *
+     * @param block block to mine
+     */
+    private void checkUnmined(Block block) {
+        if (blockchain.getMiningStrategy().validateBlock(block))
             throw new RuntimeException("Block already mined");
-        blockchain.getMiningStrategy().mine(block);
+    }
 
+    /**
+     * Mine a copy of a block and store it in the chain.
+     * The block of the chain can be shared with snapshots, so it is never modified.
+     *
+     * @param block block to mine
+     */
+    private void seal(Block block) {
+        Block copy = new Block(block);
+        blockchain.getMiningStrategy().mine(copy);
+        if (!blockchain.updateBlock(copy))
+            throw new RuntimeException("Block " + block.getId() + " changed while being mined");
+    }
+
+    /**
+     * Start mining a copy of a block, storing it in the chain when it is mined.
+     * Called holding the lock of the miner.
+     *
+     * @param block block to mine
+     * @return the running job, completed once the block is stored: it fails if the block of the chain has changed
+     */
+    private MiningJob sealAsync(Block block) {
+        MiningJob job = blockchain.getMiningStrategy().mineAsync(new Block(block)).thenStore(result -> {
+            if (!blockchain.updateBlock(result.getBlock()))
+                throw new RuntimeException("Block " + block.getId() + " changed while being mined");
+        });
+        this.sealing = sealing == null ? job : CompletableFuture.allOf(sealing, job);
+        return job;
     }
 
     /**
@@ -59,4 +252,13 @@ public class Miner {
     public int getPoolCounter() {
         return this.txPool.size();
     }
+
+    /**
+     * Tx pool getter
+     *
+     * @return pool of the transactions waiting for a block
+     */
+    public Mempool getTxPool() {
+        return this.txPool;
+    }
 }
@@ -1,5 +1,6 @@
 package dumbchain;
 
+import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
 import java.util.ArrayList;
@@ -10,7 +11,9 @@ import java.util.List;
  */
 public class MinimalTransaction implements Tx, Serialized {
 
-    private String hash;
+    private static final Gson PRETTY_GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private Hash hash;
     private String value;
 
 
@@ -27,8 +30,8 @@ public class MinimalTransaction implements Tx, Serialized {
      *
      * @return hash
      */
-    public String calculateHash() {
-        return Utils.SHA256(this.value);
+    public Hash calculateHash() {
+        return Utils.sha256(this.value);
     }
 
     /**
@@ -39,9 +42,9 @@ public class MinimalTransaction implements Tx, Serialized {
     @Override
     public String serialize() {
         List<String> serializedData = new ArrayList<>();
-        serializedData.add(hash);
+        serializedData.add(hash.toHex());
         serializedData.add(value);
-        return new GsonBuilder().setPrettyPrinting().create().toJson(serializedData);
+        return PRETTY_GSON.toJson(serializedData);
     }
 
     /**
@@ -49,7 +52,7 @@ public class MinimalTransaction implements Tx, Serialized {
      *
      * @return hash
      */
-    public String getHash() {
+    public Hash getHash() {
         return this.hash;
     }
 
@@ -0,0 +1,163 @@
+package dumbchain;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * A running mining job.
+ * The job completes with the mined block, exceptionally if the nonce space is exhausted, or it can be
+ * cancelled (or given a timeout with {@link #orTimeout}) to stop the workers.
+ * Attempts and hashrate can be read while the job is running.
+ */
+public class MiningJob extends CompletableFuture<MinedBlock> {
+
+    // Executor of the asynchronous jobs
+    static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "dumbchain-mining-job");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Block block;
+    private final LongAdder attempts;
+    private final long startNanos;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+    private volatile long endNanos;
+
+    /**
+     * Creates a new job
+     *
+     * @param block block to mine
+     */
+    MiningJob(Block block) {
+        this.block = block;
+        this.attempts = new LongAdder();
+        this.startNanos = System.nanoTime();
+        this.whenComplete((result, error) -> endNanos = System.nanoTime());
+    }
+
+    /**
+     * Creates a job following another one, sharing its progress
+     *
+     * @param mining job mining the block
+     */
+    private MiningJob(MiningJob mining) {
+        this.block = mining.block;
+        this.attempts = mining.attempts;
+        this.startNanos = mining.startNanos;
+        this.whenComplete((result, error) -> endNanos = System.nanoTime());
+    }
+
+    /**
+     * Creates a job completed once an action on the mined block succeeds, e.g. storing it in the chain.
+     * The new job shares the progress of this one, cancelling it or its timeout stops the mining.
+     *
+     * @param action action run on the result, the new job fails if it throws
+     * @return new job
+     */
+    MiningJob thenStore(Consumer<MinedBlock> action) {
+        MiningJob stored = new MiningJob(this);
+        this.whenComplete((result, error) -> {
+            if (error != null) {
+                stored.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+                return;
+            }
+            try {
+                action.accept(result);
+                stored.complete(result);
+            } catch (RuntimeException e) {
+                stored.completeExceptionally(e);
+            }
+        });
+        stored.whenComplete((result, error) -> {
+            if (error != null)
+                this.cancel(false);
+        });
+        return stored;
+    }
+
+    /**
+     * Block getter
+     *
+     * @return block being mined
+     */
+    public Block getBlock() {
+        return this.block;
+    }
+
+    /**
+     * Attempts getter
+     *
+     * @return hashes calculated so far
+     */
+    public long getAttempts() {
+        return attempts.sum();
+    }
+
+    /**
+     * Elapsed time getter
+     *
+     * @return nanoseconds from the start of the job to now, or to its end
+     */
+    public long getElapsedNanos() {
+        long end = endNanos;
+        return (end == 0 ? System.nanoTime() : end) - startNanos;
+    }
+
+    /**
+     * Average hashrate of the job
+     *
+     * @return hashes per second
+     */
+    public double getHashrate() {
+        long elapsed = getElapsedNanos();
+        return elapsed == 0 ? 0 : getAttempts() * 1e9 / elapsed;
+    }
+
+    /**
+     * Wait for the job and returns its result.
+     * Unlike join(), failures are rethrown as they are.
+     *
+     * @return mined block
+     */
+    public MinedBlock await() {
+        try {
+            return join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Count hashes calculated by a worker
+     *
+     * @param count number of hashes
+     */
+    void addAttempts(long count) {
+        attempts.add(count);
+    }
+
+    /**
+     * Reserve the right to write the result in the block. Only the first caller succeeds.
+     *
+     * @return true if the caller can seal the block
+     */
+    boolean claim() {
+        return claimed.compareAndSet(false, true);
+    }
+
+    /**
+     * Complete the job with the current state of the block
+     */
+    void succeed() {
+        complete(new MinedBlock(block, getAttempts(), System.nanoTime() - startNanos));
+    }
+}
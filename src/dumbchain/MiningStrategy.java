@@ -1,5 +1,7 @@
 package dumbchain;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Define an interface for a mining algorithm for the blockchain blocks.
  */
@@ -11,11 +13,73 @@ public interface MiningStrategy {
      */
     void mine(Block block);
 
+    /**
+     * Mine the block without blocking the caller.
+     * The default implementation runs {@link #mine(Block)} on a background thread.
+     *
+     * @param block block to mine
+     * @return the running job
+     */
+    default MiningJob mineAsync(Block block) {
+        MiningJob job = new MiningJob(block);
+        MiningJob.EXECUTOR.execute(() -> {
+            try {
+                mine(block);
+                if (job.claim())
+                    job.succeed();
+            } catch (RuntimeException e) {
+                job.completeExceptionally(e);
+            }
+        });
+        return job;
+    }
+
+    /**
+     * Mine the block without blocking the caller, giving up after a timeout.
+     *
+     * @param block   block to mine
+     * @param timeout maximum duration of the job
+     * @param unit    unit of the timeout
+     * @return the running job, completed with a TimeoutException if it expires
+     */
+    default MiningJob mineAsync(Block block, long timeout, TimeUnit unit) {
+        MiningJob job = mineAsync(block);
+        job.orTimeout(timeout, unit);
+        return job;
+    }
+
     /**
      * Validate an hash based of the algorithm implemented
      *
      * @param hash hash to validate
      * @return true if hash is valid, false otherwise
      */
-    boolean validateHash(String hash);
+    boolean validateHash(Hash hash);
+
+    /**
+     * Validate a mined block based of the algorithm implemented.
+     * The default implementation validates its hash.
+     *
+     * @param block block to validate
+     * @return true if the block is mined, false otherwise
+     */
+    default boolean validateBlock(Block block) {
+        return validateHash(block.getHash());
+    }
+
+    /**
+     * Target of the new blocks. The default implementation accepts every hash.
+     *
+     * @return target
+     */
+    default Target getTarget() {
+        return Target.MAX;
+    }
+
+    /**
+     * Stop the running mining jobs, if the algorithm supports it.
+     * The interrupted jobs leave their block unmined.
+     */
+    default void cancel() {
+    }
 }
@@ -0,0 +1,148 @@
+package dumbchain;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Hash index stored outside of the heap as an open addressing table.
+ * Every slot holds the four words of the hash followed by the value plus one, 0 marks an empty slot.
+ * Collisions are resolved by linear probing, removals shift back the following entries.
+ */
+public class OffHeapHashIndex implements HashIndex {
+
+    private static final int SLOT = Hash.BYTES + 8;
+    private static final int VALUE = Hash.BYTES;
+    // The table grows when it is three quarters full
+    private static final int MAX_LOAD_PERCENT = 75;
+
+    private ByteBuffer table;
+    private int mask;
+    private int size;
+
+    /**
+     * Creates an empty index
+     */
+    public OffHeapHashIndex() {
+        this(1024);
+    }
+
+    /**
+     * Creates an empty index
+     *
+     * @param expectedSize number of hashes stored without growing the table
+     */
+    public OffHeapHashIndex(int expectedSize) {
+        allocate(Integer.highestOneBit(Math.max(16, expectedSize * 100 / MAX_LOAD_PERCENT) - 1) << 1);
+    }
+
+    @Override
+    public long get(Hash key) {
+        int slot = find(key);
+        return slot < 0 ? MISSING : table.getLong(slot * SLOT + VALUE) - 1;
+    }
+
+    @Override
+    public void put(Hash key, long value) {
+        if (value < 0)
+            throw new RuntimeException("Invalid index value " + value);
+        int slot = find(key);
+        if (slot < 0) {
+            if ((size + 1) * 100L > (mask + 1) * (long) MAX_LOAD_PERCENT) {
+                grow();
+            }
+            slot = home(key);
+            while (!isEmpty(slot))
+                slot = (slot + 1) & mask;
+            int offset = slot * SLOT;
+            for (int i = 0; i < 4; i++)
+                table.putLong(offset + i * 8, key.word(i));
+            size++;
+        }
+        table.putLong(slot * SLOT + VALUE, value + 1);
+    }
+
+    @Override
+    public void remove(Hash key) {
+        int hole = find(key);
+        if (hole < 0)
+            return;
+        // Move back the entries of the cluster that would not be found anymore
+        for (int slot = (hole + 1) & mask; !isEmpty(slot); slot = (slot + 1) & mask) {
+            int home = homeOf(slot);
+            boolean reachable = hole <= slot ? (home > hole && home <= slot) : (home > hole || home <= slot);
+            if (!reachable) {
+                copySlot(slot, hole);
+                hole = slot;
+            }
+        }
+        table.putLong(hole * SLOT + VALUE, 0);
+        size--;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public void clear() {
+        for (int slot = 0; slot <= mask; slot++)
+            table.putLong(slot * SLOT + VALUE, 0);
+        size = 0;
+    }
+
+    private void allocate(int slots) {
+        if (slots <= 0 || (long) slots * SLOT > Integer.MAX_VALUE)
+            throw new RuntimeException("Index too large");
+        this.table = ByteBuffer.allocateDirect(slots * SLOT);
+        this.mask = slots - 1;
+        this.size = 0;
+    }
+
+    private void grow() {
+        ByteBuffer old = this.table;
+        int oldSlots = mask + 1;
+        allocate(oldSlots * 2);
+        for (int slot = 0; slot < oldSlots; slot++) {
+            int offset = slot * SLOT;
+            long value = old.getLong(offset + VALUE);
+            if (value != 0) {
+                put(new Hash(old.getLong(offset), old.getLong(offset + 8), old.getLong(offset + 16),
+                        old.getLong(offset + 24)), value - 1);
+            }
+        }
+    }
+
+    /**
+     * Slot of a hash
+     *
+     * @return slot, -1 if the hash is not in the index
+     */
+    private int find(Hash key) {
+        for (int slot = home(key); !isEmpty(slot); slot = (slot + 1) & mask) {
+            int offset = slot * SLOT;
+            if (table.getLong(offset + 24) == key.word(3) && table.getLong(offset) == key.word(0)
+                    && table.getLong(offset + 8) == key.word(1) && table.getLong(offset + 16) == key.word(2))
+                return slot;
+        }
+        return -1;
+    }
+
+    private int home(Hash key) {
+        return key.hashCode() & mask;
+    }
+
+    private int homeOf(int slot) {
+        long w3 = table.getLong(slot * SLOT + 24);
+        // Same as Hash.hashCode()
+        return (int) (w3 ^ (w3 >>> 32)) & mask;
+    }
+
+    private boolean isEmpty(int slot) {
+        return table.getLong(slot * SLOT + VALUE) == 0;
+    }
+
+    private void copySlot(int from, int to) {
+        for (int i = 0; i < SLOT; i += 8)
+            table.putLong(to * SLOT + i, table.getLong(from * SLOT + i));
+    }
+}
@@ -0,0 +1,119 @@
+package dumbchain;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Proof of Work mined by several threads.
+ * The nonce space is split in contiguous ranges, one for each worker. Every worker hashes its own
+ * copy of the block header and the first one finding a valid nonce stops the others.
+ * The worker threads are kept until the algorithm is closed.
+ */
+public class ParallelProofOfWork extends ProofOfWork implements AutoCloseable {
+
+    private final int workers;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a new algorithm with a worker for each available processor
+     *
+     * @param complexity complexity
+     */
+    public ParallelProofOfWork(int complexity) {
+        this(complexity, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new algorithm
+     *
+     * @param complexity complexity
+     * @param workers    number of mining threads
+     */
+    public ParallelProofOfWork(int complexity, int workers) {
+        this(Target.ofLeadingZeroBits(complexity * 4), workers);
+    }
+
+    /**
+     * Creates a new algorithm with a defined target
+     *
+     * @param target  target
+     * @param workers number of mining threads
+     */
+    public ParallelProofOfWork(Target target, int workers) {
+        super(target);
+        if (workers < 1)
+            throw new RuntimeException("Invalid number of workers: " + workers);
+        this.workers = workers;
+        this.executor = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "dumbchain-miner");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Mine the block using all the workers, waiting for the result.
+     *
+     * @param block block to mine
+     * @throws CancellationException if the job is cancelled before a nonce is found
+     */
+    @Override
+    public void mine(Block block) {
+        mineAsync(block).await();
+    }
+
+    /**
+     * Start mining the block using all the workers.
+     *
+     * @param block block to mine
+     * @return the running job
+     */
+    @Override
+    public MiningJob mineAsync(Block block) {
+        MiningJob job = newJob(block);
+
+        BlockHeader header = block.header();
+        AtomicInteger pending = new AtomicInteger(workers);
+        long range = NONCE_SPACE / workers;
+        for (int i = 0; i < workers; i++) {
+            int start = block.getNonce() + (int) (i * range);
+            long count = (i == workers - 1) ? NONCE_SPACE - i * range : range;
+            BlockHeader copy = header.copy();
+            executor.execute(() -> {
+                try {
+                    long nonce = search(copy.midstate(), start, count, job);
+                    if (nonce >= 0)
+                        seal(job, (int) nonce);
+                } catch (RuntimeException e) {
+                    job.completeExceptionally(e);
+                } finally {
+                    // The last worker reports an unsuccessful search
+                    if (pending.decrementAndGet() == 0 && !job.isDone())
+                        job.completeExceptionally(new RuntimeException("Nonce space exhausted for block " + block.getId()));
+                }
+            });
+        }
+        return job;
+    }
+
+    /**
+     * Workers getter
+     *
+     * @return number of mining threads
+     */
+    public int getWorkers() {
+        return this.workers;
+    }
+
+    /**
+     * Cancel the jobs running and stop the worker threads
+     */
+    @Override
+    public void close() {
+        this.cancel();
+        executor.shutdown();
+    }
+
+}
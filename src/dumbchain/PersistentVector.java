@@ -0,0 +1,219 @@
+package dumbchain;
+
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable vector stored as a 32-way trie.
+ * Updates copy only the path from the root to the element changed, every other node is shared with the
+ * previous version, so keeping old versions around costs O(log32 n) per update.
+ *
+ * @param <E> element type
+ */
+public final class PersistentVector<E> {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(0, 0, new Object[WIDTH]);
+
+    private final int size;
+    // Bits of the index consumed above the leaves, 0 when the root is a leaf
+    private final int shift;
+    private final Object[] root;
+
+    private PersistentVector(int size, int shift, Object[] root) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+    }
+
+    /**
+     * Getter of the empty vector
+     *
+     * @param <E> element type
+     * @return empty vector
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) EMPTY;
+    }
+
+    /**
+     * Creates a vector with the elements of a list
+     *
+     * @param elements elements
+     * @param <E>      element type
+     * @return vector
+     */
+    public static <E> PersistentVector<E> of(List<? extends E> elements) {
+        int n = elements.size();
+        if (n == 0)
+            return empty();
+        // Fill the leaves, then build the levels above until a single node is left
+        Object[][] level = new Object[(n + MASK) >>> BITS][];
+        for (int i = 0; i < level.length; i++) {
+            level[i] = new Object[WIDTH];
+            for (int j = 0; j < WIDTH && (i << BITS) + j < n; j++)
+                level[i][j] = elements.get((i << BITS) + j);
+        }
+        int shift = 0;
+        while (level.length > 1) {
+            Object[][] parents = new Object[(level.length + MASK) >>> BITS][];
+            for (int i = 0; i < parents.length; i++) {
+                parents[i] = new Object[WIDTH];
+                for (int j = 0; j < WIDTH && (i << BITS) + j < level.length; j++)
+                    parents[i][j] = level[(i << BITS) + j];
+            }
+            level = parents;
+            shift += BITS;
+        }
+        return new PersistentVector<>(n, shift, level[0]);
+    }
+
+    /**
+     * Number of elements
+     *
+     * @return size
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Element getter
+     *
+     * @param index index of the element
+     * @return element
+     */
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Invalid index " + index);
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS)
+            node = (Object[]) node[(index >>> level) & MASK];
+        return (E) node[index & MASK];
+    }
+
+    /**
+     * Replace an element
+     *
+     * @param index   index of the element
+     * @param element new element
+     * @return new vector
+     */
+    public PersistentVector<E> set(int index, E element) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Invalid index " + index);
+        return new PersistentVector<>(size, shift, setIn(root, shift, index, element));
+    }
+
+    /**
+     * Add an element at the end
+     *
+     * @param element element
+     * @return new vector
+     */
+    public PersistentVector<E> append(E element) {
+        if (size == Integer.MAX_VALUE)
+            throw new RuntimeException("Vector full");
+        // The root is full: add a level above it
+        if ((long) size == 1L << (shift + BITS)) {
+            Object[] newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = appendIn(null, shift, size, element);
+            return new PersistentVector<>(size + 1, shift + BITS, newRoot);
+        }
+        return new PersistentVector<>(size + 1, shift, appendIn(root, shift, size, element));
+    }
+
+    /**
+     * Remove the last element
+     *
+     * @return new vector
+     */
+    public PersistentVector<E> pop() {
+        if (size == 0)
+            throw new RuntimeException("The vector is empty");
+        if (size == 1)
+            return empty();
+        int last = size - 1;
+        Object[] newRoot = popIn(root, shift, last);
+        int newShift = shift;
+        // Drop the levels holding a single child
+        while (newShift > 0 && last <= 1 << newShift) {
+            newRoot = (Object[]) newRoot[0];
+            newShift -= BITS;
+        }
+        return new PersistentVector<>(last, newShift, newRoot);
+    }
+
+    /**
+     * Report the indexes whose elements may differ from another vector.
+     * The subtrees shared by the two vectors are skipped, so the cost depends on the number of
+     * elements changed and not on the size. Elements are compared by identity.
+     *
+     * @param other   other vector
+     * @param changed receives the indexes in ascending order, including the ones present in a single vector
+     */
+    public void diff(PersistentVector<E> other, IntConsumer changed) {
+        int common = Math.min(size, other.size);
+        if (common > 0) {
+            // The common elements are all under the first child of the higher root
+            Object[] a = root;
+            Object[] b = other.root;
+            int level = shift;
+            for (int l = other.shift; level > l; level -= BITS)
+                a = (Object[]) a[0];
+            for (int l = level; l < other.shift; l += BITS)
+                b = (Object[]) b[0];
+            diffIn(a, b, level, 0, common, changed);
+        }
+        for (int i = common; i < Math.max(size, other.size); i++)
+            changed.accept(i);
+    }
+
+    private static Object[] setIn(Object[] node, int level, int index, Object element) {
+        Object[] copy = node.clone();
+        int sub = (index >>> level) & MASK;
+        copy[sub] = level == 0 ? element : setIn((Object[]) node[sub], level - BITS, index, element);
+        return copy;
+    }
+
+    private static Object[] appendIn(Object[] node, int level, int index, Object element) {
+        Object[] copy = node == null ? new Object[WIDTH] : node.clone();
+        int sub = (index >>> level) & MASK;
+        copy[sub] = level == 0 ? element : appendIn((Object[]) copy[sub], level - BITS, index, element);
+        return copy;
+    }
+
+    private static Object[] popIn(Object[] node, int level, int index) {
+        Object[] copy = node.clone();
+        int sub = (index >>> level) & MASK;
+        if (level == 0)
+            copy[sub] = null;
+        else if ((index & ((1 << level) - 1)) == 0)
+            copy[sub] = null; // the child held only the last element
+        else
+            copy[sub] = popIn((Object[]) node[sub], level - BITS, index);
+        return copy;
+    }
+
+    private static void diffIn(Object[] a, Object[] b, int level, int base, int limit, IntConsumer changed) {
+        if (a == b)
+            return;
+        for (int j = 0; j < WIDTH; j++) {
+            int first = base + (j << level);
+            if (first >= limit || first < 0)
+                return;
+            if (level == 0) {
+                if (a[j] != b[j])
+                    changed.accept(first);
+            } else {
+                diffIn((Object[]) a[j], (Object[]) b[j], level - BITS, first, limit, changed);
+            }
+        }
+    }
+}
@@ -1,14 +1,23 @@
 package dumbchain;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 
 /**
  * Implements a Proof of Work variable algorithm for mining a block
  */
 public class ProofOfWork implements MiningStrategy {
 
-    // complexity of the mining - how many zeros the hash must have
-    private int complexity;
-    private String hashPrefix;
+    // Number of possible nonces
+    static final long NONCE_SPACE = 1L << 32;
+    // The stop condition of a search is checked every 1024 attempts
+    private static final long STOP_CHECK_MASK = 1023;
+
+    // target of the mining - the hash must not be greater than it
+    private Target target;
+    // Jobs currently running, used for the cancellation
+    private final Set<MiningJob> running = ConcurrentHashMap.newKeySet();
 
     /**
      * Default constructor. Set the complexity to 0 (Automining)
@@ -20,18 +29,19 @@ public class ProofOfWork implements MiningStrategy {
     /**
      * Creates a new algorithm setting a defined complexity
      *
-     * @param complexity complexity
+     * @param complexity complexity - how many leading hex zeros the hash must have
      */
     public ProofOfWork(int complexity) {
-        this.complexity = complexity;
-        generatePrefix();
+        this(Target.ofLeadingZeroBits(complexity * 4));
     }
 
     /**
-     * Generate the correct hash prefix
+     * Creates a new algorithm setting a defined target
+     *
+     * @param target target
      */
-    private void generatePrefix() {
-        this.hashPrefix = new String(new char[complexity]).replace('\0', '0');
+    public ProofOfWork(Target target) {
+        this.target = target;
     }
 
     /**
@@ -41,15 +51,120 @@ public class ProofOfWork implements MiningStrategy {
      */
     @Override
     public void mine(Block block) {
+        MiningJob job = newJob(block);
+        run(job);
+        job.await();
+    }
+
+    /**
+     * Mine the block on a background thread
+     *
+     * @param block block to mine
+     * @return the running job
+     */
+    @Override
+    public MiningJob mineAsync(Block block) {
+        MiningJob job = newJob(block);
+        MiningJob.EXECUTOR.execute(() -> run(job));
+        return job;
+    }
+
+    /**
+     * Cancel every running job
+     */
+    @Override
+    public void cancel() {
+        for (MiningJob job : running)
+            job.cancel(true);
+    }
 
-        // The program iterates until doesnt get a correct hash for the block
-        // The only difference between the iterations is the nonce value
-        while (!block.getHash().substring(0, complexity).equals(this.hashPrefix)) {
-            int nonce = block.getNonce();
-            block.setNonce(++nonce);
+    /**
+     * Creates a job tracked until its completion.
+     * A block without a target is given the target of the algorithm.
+     *
+     * @param block block to mine
+     * @return job
+     */
+    protected MiningJob newJob(Block block) {
+        if (block.getBits() == 0) {
+            block.setBits(this.target.toCompact());
             block.updateHash();
         }
+        MiningJob job = new MiningJob(block);
+        running.add(job);
+        job.whenComplete((result, error) -> running.remove(job));
+        return job;
+    }
 
+    /**
+     * Run a job in the current thread
+     *
+     * @param job job
+     */
+    private void run(MiningJob job) {
+        Block block = job.getBlock();
+        try {
+            // The program iterates until doesnt get a correct hash for the block
+            // The only difference between the iterations is the nonce value
+            long nonce = search(block.header().midstate(), block.getNonce(), NONCE_SPACE, job);
+            if (nonce >= 0)
+                seal(job, (int) nonce);
+            else
+                job.completeExceptionally(new RuntimeException("Nonce space exhausted for block " + block.getId()));
+        } catch (RuntimeException e) {
+            job.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Write a valid nonce in the block of a job and complete it.
+     * Only the first nonce found is written.
+     *
+     * @param job   job
+     * @param nonce nonce found
+     */
+    protected void seal(MiningJob job, int nonce) {
+        if (!job.claim())
+            return;
+        Block block = job.getBlock();
+        block.setNonce(nonce);
+        block.updateHash();
+        // The block could have been modified while the job was running
+        if (validateBlock(block))
+            job.succeed();
+        else
+            job.completeExceptionally(new RuntimeException("Block " + block.getId() + " changed while being mined"));
+    }
+
+    /**
+     * Look for a valid nonce in a range of the nonce space.
+     * Only the last chunk of the header is hashed for each attempt.
+     *
+     * @param midstate header midstate
+     * @param start    first nonce tried
+     * @param count    number of nonces tried (the range wraps around)
+     * @param job      job the search belongs to, the search ends when the job is done
+     * @return the nonce found, -1 if the range is exhausted or the job is done
+     */
+    protected long search(Sha256.Midstate midstate, int start, long count, MiningJob job) {
+        int[] state = new int[8];
+        Target target = job.getBlock().getTarget();
+        int nonce = start;
+        for (long i = 0; i < count; i++, nonce++) {
+            if ((i & STOP_CHECK_MASK) == 0 && i > 0) {
+                job.addAttempts(STOP_CHECK_MASK + 1);
+                if (job.isDone())
+                    return -1;
+            }
+            midstate.hash(nonce, state);
+            if (target.isMetBy(state)) {
+                job.addAttempts((i & STOP_CHECK_MASK) + 1);
+                return nonce & 0xffffffffL;
+            }
+        }
+        if (count > 0)
+            job.addAttempts((count - 1 & STOP_CHECK_MASK) + 1);
+        return -1;
     }
 
     /**
@@ -59,17 +174,42 @@ public class ProofOfWork implements MiningStrategy {
      * @return true if it is, false otherwise
      */
     @Override
-    public boolean validateHash(String hash) {
-        return hash.substring(0, this.getComplexity()).equals(this.hashPrefix);
+    public boolean validateHash(Hash hash) {
+        return this.target.isMetBy(hash);
+    }
+
+    /**
+     * Check if a block meets the target stored in its header,
+     * or the target of the algorithm if it has none.
+     *
+     * @param block block
+     * @return true if it is, false otherwise
+     */
+    @Override
+    public boolean validateBlock(Block block) {
+        Target blockTarget = block.getTarget();
+        if (blockTarget == null)
+            return validateHash(block.getHash());
+        return blockTarget.isMetBy(block.getHash());
     }
 
     /**
      * Getter of the complexity
      *
-     * @return complexity
+     * @return complexity - the number of leading hex zeros required by the target
      */
     public int getComplexity() {
-        return this.complexity;
+        return this.target.leadingZeroBits() / 4;
+    }
+
+    /**
+     * Getter of the target
+     *
+     * @return target
+     */
+    @Override
+    public Target getTarget() {
+        return this.target;
     }
 
 }
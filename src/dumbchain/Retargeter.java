@@ -0,0 +1,100 @@
+package dumbchain;
+
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * Adjusts the mining target to keep a steady block interval.
+ * Every {@code interval} blocks the target is scaled by the ratio between the observed and the desired
+ * time of the last period, so block production stays constant when the hash power changes.
+ * The other blocks keep the target of their previous block.
+ */
+public class Retargeter {
+
+    // Maximum change of the target in a single adjustment
+    private static final int MAX_ADJUSTMENT = 4;
+
+    private final int interval;             // number of blocks between two adjustments
+    private final long blockTimeMillis;     // desired time between two blocks
+    private final Target initialTarget;     // target of the first period, also the easiest allowed
+
+    /**
+     * Creates a new retargeter
+     *
+     * @param interval        number of blocks between two adjustments
+     * @param blockTimeMillis desired time between two blocks
+     * @param initialTarget   target of the first blocks, the target never gets easier than it
+     */
+    public Retargeter(int interval, long blockTimeMillis, Target initialTarget) {
+        if (interval < 2)
+            throw new RuntimeException("Invalid retarget interval: " + interval);
+        if (blockTimeMillis <= 0)
+            throw new RuntimeException("Invalid block time: " + blockTimeMillis);
+        this.interval = interval;
+        this.blockTimeMillis = blockTimeMillis;
+        this.initialTarget = initialTarget.normalize();
+    }
+
+    /**
+     * Calculate the target of the next block of a chain
+     *
+     * @param chain blocks
+     * @return target of the block with id chain.size()
+     */
+    public Target nextTarget(List<Block> chain) {
+        return expectedTarget(chain, chain.size());
+    }
+
+    /**
+     * Calculate the target a block must store, based on the blocks preceding it
+     *
+     * @param chain  blocks
+     * @param height id of the block
+     * @return target
+     */
+    public Target expectedTarget(List<Block> chain, int height) {
+        if (height == 0)
+            return initialTarget;
+
+        Block previous = chain.get(height - 1);
+        Target previousTarget = previous.getTarget() == null ? initialTarget : previous.getTarget();
+        if (height % interval != 0)
+            return previousTarget;
+
+        // Time observed over the last period
+        int first = Math.max(0, height - 1 - interval);
+        long gaps = height - 1 - first;
+        long expected = gaps * blockTimeMillis;
+        long actual = previous.getTimeStamp() - chain.get(first).getTimeStamp();
+        actual = Math.max(expected / MAX_ADJUSTMENT, Math.min(actual, expected * MAX_ADJUSTMENT));
+        actual = Math.max(actual, 1);
+
+        BigInteger next = previousTarget.toBigInteger()
+                .multiply(BigInteger.valueOf(actual))
+                .divide(BigInteger.valueOf(expected));
+        if (next.compareTo(initialTarget.toBigInteger()) > 0)
+            return initialTarget;
+        if (next.signum() == 0)
+            next = BigInteger.ONE;
+        return Target.of(next).normalize();
+    }
+
+    /**
+     * Interval getter
+     *
+     * @return number of blocks between two adjustments
+     */
+    public int getInterval() {
+        return this.interval;
+    }
+
+    /**
+     * Block time getter
+     *
+     * @return desired time between two blocks
+     */
+    public long getBlockTimeMillis() {
+        return this.blockTimeMillis;
+    }
+
+}
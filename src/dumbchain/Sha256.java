@@ -0,0 +1,172 @@
+package dumbchain;
+
+/**
+ * Plain java implementation of the SHA-256 compression function.
+ * MessageDigest cannot expose its internal state, this class is used when the state of a constant
+ * prefix has to be reused (see {@link Midstate}).
+ */
+final class Sha256 {
+
+    // Size of a message block in bytes
+    static final int BLOCK_BYTES = 64;
+
+    private static final int[] INITIAL_STATE = {
+            0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+
+    private static final int[] K = {
+            0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+            0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+            0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+            0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+            0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+            0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+            0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+            0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+
+    private Sha256() {
+    }
+
+    /**
+     * Process one message block
+     *
+     * @param state       the 8 words of the hash state, updated in place
+     * @param block       message words
+     * @param blockOffset first of the 16 words of the block
+     * @param w           scratch array of 64 words
+     */
+    static void compress(int[] state, int[] block, int blockOffset, int[] w) {
+        System.arraycopy(block, blockOffset, w, 0, 16);
+        for (int i = 16; i < 64; i++) {
+            int w15 = w[i - 15];
+            int w2 = w[i - 2];
+            int s0 = Integer.rotateRight(w15, 7) ^ Integer.rotateRight(w15, 18) ^ (w15 >>> 3);
+            int s1 = Integer.rotateRight(w2, 17) ^ Integer.rotateRight(w2, 19) ^ (w2 >>> 10);
+            w[i] = w[i - 16] + s0 + w[i - 7] + s1;
+        }
+
+        int a = state[0], b = state[1], c = state[2], d = state[3];
+        int e = state[4], f = state[5], g = state[6], h = state[7];
+        for (int i = 0; i < 64; i++) {
+            int s1 = Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25);
+            int ch = (e & f) ^ (~e & g);
+            int t1 = h + s1 + ch + K[i] + w[i];
+            int s0 = Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22);
+            int maj = (a & b) ^ (a & c) ^ (b & c);
+            int t2 = s0 + maj;
+            h = g;
+            g = f;
+            f = e;
+            e = d + t1;
+            d = c;
+            c = b;
+            b = a;
+            a = t1 + t2;
+        }
+        state[0] += a;
+        state[1] += b;
+        state[2] += c;
+        state[3] += d;
+        state[4] += e;
+        state[5] += f;
+        state[6] += g;
+        state[7] += h;
+    }
+
+    /**
+     * Convert a final hash state into a hash
+     *
+     * @param state 8 words of the state
+     * @return hash
+     */
+    static Hash toHash(int[] state) {
+        return new Hash(word(state, 0), word(state, 2), word(state, 4), word(state, 6));
+    }
+
+    private static long word(int[] state, int i) {
+        return ((long) state[i] << 32) | (state[i + 1] & 0xffffffffL);
+    }
+
+    private static int readInt(byte[] src, int offset) {
+        return ((src[offset] & 0xff) << 24) | ((src[offset + 1] & 0xff) << 16)
+                | ((src[offset + 2] & 0xff) << 8) | (src[offset + 3] & 0xff);
+    }
+
+    /**
+     * SHA-256 of a message whose only changing part is a 32 bit word near its end.
+     * The state after the blocks preceding that word is computed once, every call of
+     * {@link #hash(int, int[])} only compresses the remaining blocks.
+     * Instances are not thread safe.
+     */
+    static final class Midstate {
+
+        private final int[] midstate = new int[8];
+        private final int[] tail;          // padded words from the first block holding the variable word
+        private final int variableWord;    // index of the variable word in the tail
+        private final int[] w = new int[64];
+
+        /**
+         * Creates a new midstate
+         *
+         * @param message        the message
+         * @param variableOffset offset of the variable 4 byte word, must be aligned to 4
+         */
+        Midstate(byte[] message, int variableOffset) {
+            if (variableOffset % 4 != 0 || variableOffset + 4 > message.length)
+                throw new RuntimeException("Invalid variable word offset " + variableOffset);
+
+            int prefixBlocks = variableOffset / BLOCK_BYTES;
+            int tailStart = prefixBlocks * BLOCK_BYTES;
+
+            // Hash the constant prefix
+            System.arraycopy(INITIAL_STATE, 0, midstate, 0, 8);
+            int[] block = new int[16];
+            for (int b = 0; b < prefixBlocks; b++) {
+                for (int i = 0; i < 16; i++)
+                    block[i] = readInt(message, b * BLOCK_BYTES + i * 4);
+                compress(midstate, block, 0, w);
+            }
+
+            // Pad the rest of the message: 0x80, zeros, 64 bit length in bits
+            int tailLength = message.length - tailStart;
+            int paddedLength = ((tailLength + 8) / BLOCK_BYTES + 1) * BLOCK_BYTES;
+            byte[] padded = new byte[paddedLength];
+            System.arraycopy(message, tailStart, padded, 0, tailLength);
+            padded[tailLength] = (byte) 0x80;
+            long bits = (long) message.length * 8;
+            for (int i = 0; i < 8; i++)
+                padded[paddedLength - 1 - i] = (byte) (bits >>> (8 * i));
+
+            this.tail = new int[paddedLength / 4];
+            for (int i = 0; i < tail.length; i++)
+                tail[i] = readInt(padded, i * 4);
+            this.variableWord = (variableOffset - tailStart) / 4;
+        }
+
+        /**
+         * Hash the message with a given value of the variable word
+         *
+         * @param value variable word (big endian in the message)
+         * @param out   destination of the 8 words of the hash
+         */
+        void hash(int value, int[] out) {
+            tail[variableWord] = value;
+            System.arraycopy(midstate, 0, out, 0, 8);
+            for (int offset = 0; offset < tail.length; offset += 16)
+                compress(out, tail, offset, w);
+        }
+
+        /**
+         * Hash the message with a given value of the variable word
+         *
+         * @param value variable word
+         * @return hash
+         */
+        Hash hash(int value) {
+            int[] out = new int[8];
+            hash(value, out);
+            return toHash(out);
+        }
+    }
+}
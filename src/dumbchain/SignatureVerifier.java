@@ -0,0 +1,110 @@
+package dumbchain;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Verifies the signatures of the {@link SignedTransaction}s, the other transactions are always accepted.
+ * <p>
+ * Batches are verified in parallel. The hashes of the transactions verified are cached, so a transaction
+ * accepted when it entered the chain is not verified again by the validation. The hash covers the signature,
+ * so a cached hash cannot be reused by a transaction with a different content. When the cache is full the least
+ * recently used hash is dropped. The cache is locked only to look up and add a hash, never while verifying.
+ */
+public class SignatureVerifier {
+
+    // Default maximum number of hashes cached
+    public static final int DEFAULT_CACHE_SIZE = 1 << 20;
+
+    private final int cacheSize;
+    // Hashes of the transactions verified, least recently used first
+    private final Map<Hash, Boolean> verified;
+
+    /**
+     * Creates a verifier with the default cache size
+     */
+    public SignatureVerifier() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a verifier
+     *
+     * @param cacheSize maximum number of hashes of verified transactions kept
+     */
+    public SignatureVerifier(int cacheSize) {
+        if (cacheSize < 0)
+            throw new RuntimeException("Invalid cache size " + cacheSize);
+        this.cacheSize = cacheSize;
+        this.verified = new LinkedHashMap<Hash, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Hash, Boolean> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Verify a transaction
+     *
+     * @param tx transaction
+     * @return true if it is not signed or if its signature is valid
+     */
+    public boolean verify(Tx tx) {
+        if (!(tx instanceof SignedTransaction))
+            return true;
+        Hash hash = tx.getHash();
+        synchronized (verified) {
+            if (verified.get(hash) != null)
+                return true;
+        }
+        if (!((SignedTransaction) tx).verify())
+            return false;
+        this.remember(hash);
+        return true;
+    }
+
+    /**
+     * Verify a batch of transactions in parallel
+     *
+     * @param txs transactions
+     * @return the first transaction with an invalid signature found, null if they are all valid
+     */
+    public Tx findInvalid(Collection<? extends Tx> txs) {
+        return txs.parallelStream()
+                .filter(tx -> !this.verify(tx))
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Verify a batch of transactions in parallel, throwing if a signature is invalid
+     *
+     * @param txs transactions
+     */
+    public void checkAll(Collection<? extends Tx> txs) {
+        Tx invalid = this.findInvalid(txs);
+        if (invalid != null)
+            throw new RuntimeException("Invalid signature for TX " + invalid.getHash());
+    }
+
+    /**
+     * Getter of the cache size
+     *
+     * @return number of hashes of verified transactions kept
+     */
+    public int getCached() {
+        synchronized (verified) {
+            return verified.size();
+        }
+    }
+
+    private void remember(Hash hash) {
+        if (cacheSize == 0)
+            return;
+        synchronized (verified) {
+            verified.put(hash, Boolean.TRUE);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package dumbchain;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+
+/**
+ * Transaction signed by its sender.
+ * <p>
+ * The transaction holds the public key of the sender, a binary payload and the signature of both, made with
+ * Ed25519 or ECDSA over P-256. The hash covers the signature too, so a transaction whose hash has been
+ * verified once does not need to be verified again (see {@link SignatureVerifier}).
+ */
+public final class SignedTransaction implements Tx {
+
+    /**
+     * Signature algorithm
+     */
+    public enum Scheme {
+        ED25519("Ed25519", "Ed25519"),
+        ECDSA_P256("EC", "SHA256withECDSA");
+
+        private final String keyAlgorithm;
+        private final String signatureAlgorithm;
+
+        Scheme(String keyAlgorithm, String signatureAlgorithm) {
+            this.keyAlgorithm = keyAlgorithm;
+            this.signatureAlgorithm = signatureAlgorithm;
+        }
+
+        /**
+         * Find the scheme of a key
+         *
+         * @param algorithm algorithm of the key
+         * @return scheme
+         */
+        static Scheme of(String algorithm) {
+            switch (algorithm) {
+                case "Ed25519":
+                case "EdDSA":
+                    return ED25519;
+                case "EC":
+                    return ECDSA_P256;
+                default:
+                    throw new RuntimeException("Unsupported key algorithm " + algorithm);
+            }
+        }
+    }
+
+    private final Scheme scheme;
+    private final byte[] publicKey;  // X.509 encoding of the public key of the sender
+    private final byte[] payload;
+    private final byte[] signature;  // Signature of the scheme, the key and the payload
+    private volatile Hash hash;
+
+    /**
+     * Creates a transaction from its parts, without verifying it
+     *
+     * @param scheme    signature algorithm
+     * @param publicKey X.509 encoding of the public key of the sender
+     * @param payload   payload
+     * @param signature signature
+     */
+    public SignedTransaction(Scheme scheme, byte[] publicKey, byte[] payload, byte[] signature) {
+        if (scheme == null || publicKey == null || payload == null || signature == null)
+            throw new RuntimeException("Invalid signed TX (missing part)");
+        this.scheme = scheme;
+        this.publicKey = publicKey.clone();
+        this.payload = payload.clone();
+        this.signature = signature.clone();
+    }
+
+    /**
+     * Sign a payload
+     *
+     * @param keys    key pair of the sender, Ed25519 or EC P-256
+     * @param payload payload
+     * @return signed transaction
+     */
+    public static SignedTransaction sign(KeyPair keys, byte[] payload) {
+        Scheme scheme = Scheme.of(keys.getPublic().getAlgorithm());
+        byte[] publicKey = keys.getPublic().getEncoded();
+        try {
+            Signature signer = Signature.getInstance(scheme.signatureAlgorithm);
+            signer.initSign(keys.getPrivate());
+            signer.update(message(scheme, publicKey, payload));
+            return new SignedTransaction(scheme, publicKey, payload, signer.sign());
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Cannot sign the TX", e);
+        }
+    }
+
+    /**
+     * Verify the signature. The cost is high, see {@link SignatureVerifier} to verify many transactions.
+     *
+     * @return true if the signature is valid
+     */
+    public boolean verify() {
+        try {
+            PublicKey key = KeyFactory.getInstance(scheme.keyAlgorithm).generatePublic(new X509EncodedKeySpec(publicKey));
+            Signature verifier = Signature.getInstance(scheme.signatureAlgorithm);
+            verifier.initVerify(key);
+            verifier.update(message(scheme, publicKey, payload));
+            return verifier.verify(signature);
+        } catch (GeneralSecurityException e) {
+            // Malformed key or signature
+            return false;
+        }
+    }
+
+    /**
+     * Message signed: the hash of the scheme, the key and the payload, so the cost of the signature does not
+     * depend on the payload size
+     */
+    private static byte[] message(Scheme scheme, byte[] publicKey, byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + publicKey.length + payload.length);
+        buffer.put((byte) scheme.ordinal()).putInt(publicKey.length).put(publicKey).put(payload);
+        return Utils.sha256(buffer.array()).toBytes();
+    }
+
+    /**
+     * Calculate the hash of the encoding of the transaction, signature included
+     *
+     * @return hash
+     */
+    @Override
+    public Hash calculateHash() {
+        ByteBuffer buffer = ByteBuffer.allocate(this.encodedSize());
+        this.writeTo(buffer);
+        return Utils.sha256(buffer.array());
+    }
+
+    /**
+     * Getter of the hash, calculated on first use
+     *
+     * @return hash
+     */
+    @Override
+    public Hash getHash() {
+        Hash h = this.hash;
+        if (h == null) {
+            h = this.calculateHash();
+            this.hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Size of the binary encoding
+     *
+     * @return bytes
+     */
+    int encodedSize() {
+        return 1 + BinaryCodec.varintSize(publicKey.length) + publicKey.length
+                + BinaryCodec.varintSize(payload.length) + payload.length
+                + BinaryCodec.varintSize(signature.length) + signature.length;
+    }
+
+    /**
+     * Write the binary encoding: {@code [scheme][key length][key][payload length][payload][signature length][signature]}
+     *
+     * @param dst destination, with at least {@link #encodedSize()} bytes remaining
+     */
+    void writeTo(ByteBuffer dst) {
+        dst.put((byte) scheme.ordinal());
+        for (byte[] part : new byte[][]{publicKey, payload, signature}) {
+            BinaryCodec.putVarint(dst, part.length);
+            dst.put(part);
+        }
+    }
+
+    /**
+     * Read the binary encoding
+     *
+     * @param src source, positioned on the encoding
+     * @return transaction
+     */
+    static SignedTransaction read(ByteBuffer src) {
+        int scheme = src.get();
+        if (scheme < 0 || scheme >= Scheme.values().length)
+            throw new RuntimeException("Unknown signature scheme " + scheme);
+        byte[][] parts = new byte[3][];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = new byte[BinaryCodec.getLength(src)];
+            src.get(parts[i]);
+        }
+        return new SignedTransaction(Scheme.values()[scheme], parts[0], parts[1], parts[2]);
+    }
+
+    /**
+     * Scheme getter
+     *
+     * @return signature algorithm
+     */
+    public Scheme getScheme() {
+        return this.scheme;
+    }
+
+    /**
+     * Public key getter
+     *
+     * @return X.509 encoding of the public key of the sender
+     */
+    public byte[] getPublicKey() {
+        return this.publicKey.clone();
+    }
+
+    /**
+     * Payload getter
+     *
+     * @return payload
+     */
+    public byte[] getPayload() {
+        return this.payload.clone();
+    }
+
+    /**
+     * Signature getter
+     *
+     * @return signature
+     */
+    public byte[] getSignature() {
+        return this.signature.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "SignedTransaction[" + this.payload.length + " bytes]";
+    }
+}
@@ -0,0 +1,370 @@
+package dumbchain;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Balances and nonces of the accounts after the last block of a chain, updated as the {@link Transfer}s are
+ * added and undone, so a balance is read in constant time instead of replaying the chain.
+ * <p>
+ * The state root is the sum, modulo 2^256, of the SHA-256 of {@code [account][balance][nonce]} of every account
+ * holding a balance or a nonce. A change of an account updates it in constant time: the hash of the old
+ * values is subtracted and the hash of the new ones is added. Every block stores the root after its transactions.
+ * <p>
+ * The root is not collision-resistant: a sum of hashes can be matched by another set of leaves with Wagner's
+ * generalized birthday attack, far faster than finding a SHA-256 collision. It catches a state which drifted
+ * from the transactions, but it does not prove the balances to whoever did not replay the chain.
+ * <p>
+ * The state is changed by the chain holding it, while the queries can be made from any thread without waiting.
+ */
+public class StateEngine {
+
+    private AccountTable accounts;
+    // State root as four big-endian words
+    private final long[] root = new long[4];
+    // Balances before the genesis block
+    private final AccountTable initial;
+    private final Hash initialRoot;
+    private final ByteBuffer leaf = ByteBuffer.allocate(8 * 3);
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Creates a state with no balances
+     */
+    public StateEngine() {
+        this(Collections.emptyMap());
+    }
+
+    /**
+     * Creates a state
+     *
+     * @param allocation balances of the accounts before the genesis block
+     */
+    public StateEngine(Map<Long, Long> allocation) {
+        this.accounts = new AccountTable(allocation.size());
+        for (Map.Entry<Long, Long> entry : allocation.entrySet()) {
+            if (entry.getValue() < 0)
+                throw new RuntimeException("Invalid balance " + entry.getValue());
+            this.set(entry.getKey(), entry.getValue(), 0);
+        }
+        this.initial = new AccountTable(accounts);
+        this.initialRoot = this.getRoot();
+    }
+
+    private StateEngine(StateEngine other, AccountTable accounts) {
+        this.accounts = accounts;
+        System.arraycopy(other.root, 0, this.root, 0, root.length);
+        this.initial = other.initial;
+        this.initialRoot = other.initialRoot;
+    }
+
+    /**
+     * Balance getter
+     *
+     * @param account account, see {@link Transfer#account}
+     * @return balance
+     */
+    public long getBalance(long account) {
+        long stamp = lock.tryOptimisticRead();
+        long balance = accounts.getBalance(account);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                balance = accounts.getBalance(account);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return balance;
+    }
+
+    /**
+     * Nonce getter
+     *
+     * @param account account, see {@link Transfer#account}
+     * @return nonce of the next transfer of the account
+     */
+    public long getNonce(long account) {
+        long stamp = lock.tryOptimisticRead();
+        long nonce = accounts.getNonce(account);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                nonce = accounts.getNonce(account);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return nonce;
+    }
+
+    /**
+     * State root getter
+     *
+     * @return root of the current state
+     */
+    public Hash getRoot() {
+        long stamp = lock.tryOptimisticRead();
+        Hash hash = new Hash(root[0], root[1], root[2], root[3]);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                hash = new Hash(root[0], root[1], root[2], root[3]);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Initial root getter
+     *
+     * @return root of the state before the genesis block
+     */
+    public Hash getInitialRoot() {
+        return this.initialRoot;
+    }
+
+    /**
+     * Getter of the number of accounts
+     *
+     * @return accounts which held a balance
+     */
+    public int getAccounts() {
+        long stamp = lock.tryOptimisticRead();
+        int size = accounts.size();
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                size = accounts.size();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Check a transfer waiting for a block against the current state. Its nonce can be ahead of the state,
+     * since the transfers of the same sender waiting before it are not applied yet.
+     *
+     * @param transfer transfer
+     * @return reason why it cannot be applied, null if it can once the transfers before it are applied
+     */
+    public String checkPending(Transfer transfer) {
+        long stamp = lock.readLock();
+        try {
+            long sender = transfer.getSender();
+            if (transfer.getAmount() <= 0)
+                return "invalid amount " + transfer.getAmount();
+            if (transfer.getNonce() < accounts.getNonce(sender))
+                return "nonce " + transfer.getNonce() + " already used";
+            if (accounts.getBalance(sender) < transfer.getAmount())
+                return "insufficient balance";
+            return null;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Apply the transfers of some transactions, checking them. Nothing is applied if a transfer is invalid.
+     *
+     * @param txs transactions, in order
+     * @return state root after every transaction
+     */
+    Hash[] apply(List<? extends Tx> txs) {
+        Hash[] roots = new Hash[txs.size()];
+        long stamp = lock.writeLock();
+        try {
+            Hash current = this.currentRoot();
+            for (int i = 0; i < roots.length; i++) {
+                Transfer transfer = Transfer.of(txs.get(i));
+                if (transfer != null) {
+                    String fault = this.check(transfer);
+                    if (fault != null) {
+                        for (int j = i - 1; j >= 0; j--)
+                            this.undo(Transfer.of(txs.get(j)));
+                        throw new RuntimeException("Invalid transfer " + txs.get(i).getHash() + ": " + fault);
+                    }
+                    this.transfer(transfer);
+                    current = this.currentRoot();
+                }
+                roots[i] = current;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return roots;
+    }
+
+    /**
+     * Apply the transfers of some transactions without checking them, e.g. for a chain read from the disk
+     *
+     * @param txs transactions, in order
+     */
+    void replay(List<? extends Tx> txs) {
+        long stamp = lock.writeLock();
+        try {
+            for (Tx tx : txs)
+                this.transfer(Transfer.of(tx));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Undo the transfers of some transactions applied before
+     *
+     * @param txs transactions, in the order they were applied
+     */
+    void revert(List<? extends Tx> txs) {
+        long stamp = lock.writeLock();
+        try {
+            for (int i = txs.size() - 1; i >= 0; i--)
+                this.undo(Transfer.of(txs.get(i)));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Undo a transfer and check that it was valid in the state it was applied to
+     *
+     * @param transfer transfer applied last
+     * @return reason why the transfer was invalid, null if it was valid
+     */
+    String revertChecked(Transfer transfer) {
+        long stamp = lock.writeLock();
+        try {
+            this.undo(transfer);
+            return this.check(transfer);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Go back to the state before the genesis block
+     */
+    void reset() {
+        long stamp = lock.writeLock();
+        try {
+            this.accounts = new AccountTable(initial);
+            Hash r = this.initialRoot;
+            for (int i = 0; i < root.length; i++)
+                root[i] = r.word(i);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Creates an independent copy of the current state
+     *
+     * @return copy
+     */
+    StateEngine copy() {
+        long stamp = lock.readLock();
+        try {
+            return new StateEngine(this, new AccountTable(accounts));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Creates a state over the current one: its changes do not alter the current state, and only the accounts
+     * changed are stored. The current state must not change while the new one is used, e.g. the chain is locked.
+     *
+     * @return state starting from the current one
+     */
+    StateEngine overlay() {
+        long stamp = lock.readLock();
+        try {
+            return new StateEngine(this, AccountTable.overlay(accounts));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Check a transfer against the current state
+     *
+     * @return reason why it cannot be applied, null if it can
+     */
+    private String check(Transfer transfer) {
+        long sender = transfer.getSender();
+        if (transfer.getAmount() <= 0)
+            return "invalid amount " + transfer.getAmount();
+        if (transfer.getNonce() != accounts.getNonce(sender))
+            return "expected nonce " + accounts.getNonce(sender) + ", found " + transfer.getNonce();
+        if (accounts.getBalance(sender) < transfer.getAmount())
+            return "insufficient balance";
+        if (sender != transfer.getRecipient()
+                && accounts.getBalance(transfer.getRecipient()) > Long.MAX_VALUE - transfer.getAmount())
+            return "balance overflow";
+        return null;
+    }
+
+    private void transfer(Transfer transfer) {
+        if (transfer == null)
+            return;
+        long sender = transfer.getSender();
+        long recipient = transfer.getRecipient();
+        this.set(sender, accounts.getBalance(sender) - transfer.getAmount(), accounts.getNonce(sender) + 1);
+        this.set(recipient, accounts.getBalance(recipient) + transfer.getAmount(), accounts.getNonce(recipient));
+    }
+
+    private void undo(Transfer transfer) {
+        if (transfer == null)
+            return;
+        long sender = transfer.getSender();
+        long recipient = transfer.getRecipient();
+        this.set(recipient, accounts.getBalance(recipient) - transfer.getAmount(), accounts.getNonce(recipient));
+        this.set(sender, accounts.getBalance(sender) + transfer.getAmount(), accounts.getNonce(sender) - 1);
+    }
+
+    /**
+     * Change an account, updating the state root
+     */
+    private void set(long account, long balance, long nonce) {
+        this.addLeaf(account, accounts.getBalance(account), accounts.getNonce(account), true);
+        this.addLeaf(account, balance, nonce, false);
+        accounts.put(account, balance, nonce);
+    }
+
+    /**
+     * Add or subtract the hash of an account to the root
+     */
+    private void addLeaf(long account, long balance, long nonce, boolean subtract) {
+        // An empty account is the same as a missing one
+        if (balance == 0 && nonce == 0)
+            return;
+        leaf.clear();
+        leaf.putLong(account).putLong(balance).putLong(nonce);
+        Hash h = Utils.sha256(leaf.array());
+        long carry = 0;
+        for (int i = root.length - 1; i >= 0; i--) {
+            long word = h.word(i);
+            long r = root[i];
+            if (subtract) {
+                long d = r - word - carry;
+                carry = Long.compareUnsigned(r, word) < 0 || (carry != 0 && r - word == 0) ? 1 : 0;
+                root[i] = d;
+            } else {
+                long s = r + word + carry;
+                carry = Long.compareUnsigned(s, r) < 0 || (carry != 0 && s == r) ? 1 : 0;
+                root[i] = s;
+            }
+        }
+    }
+
+    private Hash currentRoot() {
+        return new Hash(root[0], root[1], root[2], root[3]);
+    }
+}
@@ -0,0 +1,243 @@
+package dumbchain;
+
+import java.util.AbstractList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * List of blocks backed by a {@link BlockStore}.
+ * Only the most recently used blocks and the last block are kept on the heap, the others are decoded from
+ * the store when requested. The last block is the one still receiving transactions: its new versions are kept
+ * on the heap and written to the store only when a new block is added after it, when a snapshot is restored
+ * and on flush, so the record of the last block is out of date until then.
+ * The list can be read by many threads at once. The blocks read from the store and the blocks stored other than the
+ * last one are sealed, since modifying them would not change the stored version: they must be copied and set back.
+ * Records are never overwritten, so the blocks are cached by record location and the cache is shared with
+ * the snapshots.
+ */
+public class StoredChain extends AbstractList<Block> implements ChainList {
+
+    // Default number of blocks kept on the heap
+    public static final int DEFAULT_CACHE_SIZE = 256;
+
+    private final BlockStore store;
+    // Blocks by location of their record
+    private final Map<Long, Block> recent;
+    private Block tip;
+
+    /**
+     * Creates a new list over a store
+     *
+     * @param store     store
+     * @param cacheSize number of blocks kept on the heap
+     */
+    public StoredChain(BlockStore store, int cacheSize) {
+        this.store = store;
+        this.recent = new LinkedHashMap<Long, Block>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Block> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        if (store.size() > 0)
+            this.tip = load(store, store.locations(), store.size() - 1);
+    }
+
+    @Override
+    public Block get(int index) {
+        PersistentVector<Long> locations;
+        synchronized (this) {
+            int size = size();
+            if (index < 0 || index >= size)
+                throw new IndexOutOfBoundsException("Invalid block Id " + index);
+            if (index == size - 1)
+                return tip;
+            locations = store.locations();
+        }
+        return this.read(locations, index);
+    }
+
+    /**
+     * Read a block through the cache
+     *
+     * @param locations locations of the records
+     * @param index     id of the block
+     * @return sealed block
+     */
+    private Block read(PersistentVector<Long> locations, int index) {
+        long location = locations.get(index);
+        synchronized (this) {
+            Block cached = recent.get(location);
+            if (cached != null)
+                return cached;
+        }
+        // Decode outside the lock, so that parallel readers do not wait for each other
+        Block block = load(store, locations, index);
+        synchronized (this) {
+            Block cached = recent.putIfAbsent(location, block);
+            return cached != null ? cached : block;
+        }
+    }
+
+    @Override
+    public int size() {
+        return store.size();
+    }
+
+    @Override
+    public synchronized boolean add(Block block) {
+        int size = size();
+        // The previous tip does not change anymore
+        if (tip != null) {
+            store.put(size - 1, tip);
+            tip.seal();
+            recent.put(store.locations().get(size - 1), tip);
+        }
+        store.put(size, block);
+        tip = block;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public synchronized Block set(int index, Block block) {
+        Block previous = get(index);
+        if (index == size() - 1) {
+            tip = block;
+        } else {
+            store.put(index, block);
+            block.seal();
+            recent.put(store.locations().get(index), block);
+        }
+        return previous;
+    }
+
+    @Override
+    public synchronized Block remove(int index) {
+        if (index != size() - 1)
+            throw new UnsupportedOperationException("Only the last block can be removed");
+        Block removed = tip;
+        store.truncate(index);
+        if (index > 0) {
+            tip = this.read(store.locations(), index - 1);
+        } else {
+            tip = null;
+        }
+        modCount++;
+        return removed;
+    }
+
+    /**
+     * Take a snapshot of the list. The blocks are read from the records stored when the snapshot was taken,
+     * the last block is kept on the heap.
+     *
+     * @return read only list of the current blocks
+     */
+    @Override
+    public synchronized List<Block> snapshot() {
+        return new Snapshot(this, store.locations(), tip);
+    }
+
+    /**
+     * Replace the content of the list. A snapshot of the list is restored by pointing the blocks changed
+     * back to their old records, any other list is compared block by block and only the blocks that
+     * differ are written.
+     *
+     * @param blocks  new blocks
+     * @param changed receives the ids of the blocks that may have changed, in ascending order
+     */
+    @Override
+    public synchronized void replaceWith(List<Block> blocks, IntConsumer changed) {
+        if (blocks instanceof Snapshot && ((Snapshot) blocks).owner == this) {
+            Snapshot snapshot = (Snapshot) blocks;
+            BitSet ids = new BitSet();
+            store.restore(snapshot.locations, ids::set);
+            // The last block could have been modified after it was written
+            tip = snapshot.tip;
+            if (tip != null) {
+                store.put(snapshot.size() - 1, tip);
+                ids.set(snapshot.size() - 1);
+            }
+            ids.stream().forEach(changed);
+        } else {
+            int common = Math.min(size(), blocks.size());
+            int oldSize = size();
+            if (size() > blocks.size())
+                store.truncate(blocks.size());
+            for (int i = 0; i < blocks.size(); i++) {
+                Block block = blocks.get(i);
+                if (i >= common || !store.get(i).getHash().equals(block.getHash())) {
+                    store.put(i, block);
+                    changed.accept(i);
+                }
+            }
+            for (int i = blocks.size(); i < oldSize; i++)
+                changed.accept(i);
+            tip = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+        }
+        modCount++;
+    }
+
+    /**
+     * Write the last block and force the store to the disk
+     */
+    public synchronized void flush() {
+        if (tip != null)
+            store.put(size() - 1, tip);
+        store.flush();
+    }
+
+    /**
+     * Read a sealed block from the store
+     *
+     * @param store     store
+     * @param locations locations of the records
+     * @param height    id of the block
+     * @return block
+     */
+    private static Block load(BlockStore store, PersistentVector<Long> locations, int height) {
+        Block block = store.get(locations, height);
+        block.seal();
+        return block;
+    }
+
+    /**
+     * Store getter
+     *
+     * @return store
+     */
+    public BlockStore getStore() {
+        return this.store;
+    }
+
+    /**
+     * Read only version of the list
+     */
+    private static final class Snapshot extends AbstractList<Block> {
+
+        private final StoredChain owner;
+        private final PersistentVector<Long> locations;
+        private final Block tip;
+
+        private Snapshot(StoredChain owner, PersistentVector<Long> locations, Block tip) {
+            this.owner = owner;
+            this.locations = locations;
+            this.tip = tip;
+        }
+
+        @Override
+        public Block get(int index) {
+            if (index == locations.size() - 1)
+                return tip;
+            return owner.read(locations, index);
+        }
+
+        @Override
+        public int size() {
+            return locations.size();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package dumbchain;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * 256 bit difficulty target. A hash meets the target if, read as an unsigned number, it is not greater than it.
+ * The check compares the words of the digest directly, without allocating.
+ */
+public final class Target {
+
+    // Easiest target, met by every hash
+    public static final Target MAX = new Target(-1L, -1L, -1L, -1L);
+
+    private static final BigInteger MAX_VALUE = BigInteger.ONE.shiftLeft(256).subtract(BigInteger.ONE);
+
+    // Words of the target, most significant first
+    private final long[] words;
+
+    private Target(long w0, long w1, long w2, long w3) {
+        this.words = new long[]{w0, w1, w2, w3};
+    }
+
+    /**
+     * Creates a target requiring a number of leading zero bits.
+     *
+     * @param bits leading zero bits, from 0 to 256
+     * @return target
+     */
+    public static Target ofLeadingZeroBits(int bits) {
+        if (bits < 0 || bits > 256)
+            throw new RuntimeException("Invalid number of zero bits: " + bits);
+        long[] w = new long[4];
+        for (int i = 0; i < 4; i++) {
+            int zeros = Math.min(Math.max(bits - 64 * i, 0), 64);
+            w[i] = zeros == 64 ? 0 : -1L >>> zeros;
+        }
+        return new Target(w[0], w[1], w[2], w[3]);
+    }
+
+    /**
+     * Creates a target from its numeric value. Values above the maximum are clamped to it.
+     *
+     * @param value target value
+     * @return target
+     */
+    public static Target of(BigInteger value) {
+        if (value.signum() < 0)
+            throw new RuntimeException("Invalid target: " + value);
+        if (value.compareTo(MAX_VALUE) > 0)
+            value = MAX_VALUE;
+        long[] w = new long[4];
+        for (int i = 0; i < 4; i++)
+            w[i] = value.shiftRight(64 * (3 - i)).longValue();
+        return new Target(w[0], w[1], w[2], w[3]);
+    }
+
+    /**
+     * Decode a target from its compact form: an exponent byte followed by a 23 bit mantissa,
+     * value = mantissa * 256^(exponent - 3).
+     *
+     * @param compact compact target
+     * @return target
+     */
+    public static Target fromCompact(int compact) {
+        int size = compact >>> 24;
+        BigInteger mantissa = BigInteger.valueOf(compact & 0x007fffff);
+        if (size <= 3)
+            return of(mantissa.shiftRight(8 * (3 - size)));
+        return of(mantissa.shiftLeft(8 * (size - 3)));
+    }
+
+    /**
+     * Encode the target in the compact form stored in the block headers.
+     * The encoding keeps the 23 most significant bits, the rest of the target is rounded down.
+     *
+     * @return compact target
+     */
+    public int toCompact() {
+        BigInteger value = toBigInteger();
+        int size = (value.bitLength() + 7) / 8;
+        long mantissa = size <= 3
+                ? value.longValue() << 8 * (3 - size)
+                : value.shiftRight(8 * (size - 3)).longValue();
+        // The mantissa has 23 bits, move a full byte to the exponent if needed
+        if ((mantissa & 0x00800000) != 0) {
+            mantissa >>= 8;
+            size++;
+        }
+        return (size << 24) | (int) mantissa;
+    }
+
+    /**
+     * Round the target to the precision of the compact form
+     *
+     * @return target as stored in the headers
+     */
+    public Target normalize() {
+        return fromCompact(toCompact());
+    }
+
+    /**
+     * Check if an hash meets the target
+     *
+     * @param hash hash
+     * @return true if hash is not greater than the target
+     */
+    public boolean isMetBy(Hash hash) {
+        for (int i = 0; i < 4; i++) {
+            int c = Long.compareUnsigned(hash.word(i), words[i]);
+            if (c != 0)
+                return c < 0;
+        }
+        return true;
+    }
+
+    /**
+     * Check if a SHA-256 final state meets the target
+     *
+     * @param state 8 words of the state
+     * @return true if the digest is not greater than the target
+     */
+    boolean isMetBy(int[] state) {
+        for (int i = 0; i < 8; i++) {
+            int targetWord = (int) (words[i >> 1] >>> ((i & 1) == 0 ? 32 : 0));
+            int c = Integer.compareUnsigned(state[i], targetWord);
+            if (c != 0)
+                return c < 0;
+        }
+        return true;
+    }
+
+    /**
+     * Numeric value of the target
+     *
+     * @return value
+     */
+    public BigInteger toBigInteger() {
+        return new BigInteger(1, toHash().toBytes());
+    }
+
+    /**
+     * Count the leading zero bits of the target
+     *
+     * @return number of leading zero bits
+     */
+    public int leadingZeroBits() {
+        int zeros = 0;
+        for (long w : words) {
+            if (w != 0)
+                return zeros + Long.numberOfLeadingZeros(w);
+            zeros += 64;
+        }
+        return zeros;
+    }
+
+    /**
+     * Expected number of hashes needed to meet the target
+     *
+     * @return work
+     */
+    public double expectedAttempts() {
+        return Math.pow(2, 256) / (toBigInteger().doubleValue() + 1);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof Target))
+            return false;
+        return Arrays.equals(words, ((Target) o).words);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+
+    @Override
+    public String toString() {
+        return toHash().toHex();
+    }
+
+    private Hash toHash() {
+        return new Hash(words[0], words[1], words[2], words[3]);
+    }
+}
@@ -0,0 +1,124 @@
+package dumbchain;
+
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.security.PublicKey;
+
+/**
+ * Transfer of an amount between two accounts, carried by the payload of a {@link SignedTransaction}.
+ * <p>
+ * The sender is the account of the key signing the transaction, so only its owner can spend its balance.
+ * The nonce is the number of transfers sent before by the account: a transfer cannot be replayed.
+ * Payload layout (big endian): {@code ["XFER"][recipient 8 bytes][amount 8 bytes][nonce 8 bytes]}.
+ */
+public final class Transfer {
+
+    // Size of the payload in bytes
+    public static final int SIZE = 4 + 8 + 8 + 8;
+
+    private static final int MAGIC = 0x58464552; // "XFER"
+
+    private final long sender;
+    private final long recipient;
+    private final long amount;
+    private final long nonce;
+
+    private Transfer(long sender, long recipient, long amount, long nonce) {
+        this.sender = sender;
+        this.recipient = recipient;
+        this.amount = amount;
+        this.nonce = nonce;
+    }
+
+    /**
+     * Creates a signed transfer
+     *
+     * @param keys      key pair of the sender, Ed25519 or EC P-256
+     * @param recipient account of the recipient
+     * @param amount    amount transferred
+     * @param nonce     number of transfers sent before by the sender
+     * @return signed transaction
+     */
+    public static SignedTransaction sign(KeyPair keys, long recipient, long amount, long nonce) {
+        ByteBuffer payload = ByteBuffer.allocate(SIZE);
+        payload.putInt(MAGIC).putLong(recipient).putLong(amount).putLong(nonce);
+        return SignedTransaction.sign(keys, payload.array());
+    }
+
+    /**
+     * Read the transfer carried by a transaction
+     *
+     * @param tx transaction
+     * @return transfer, null if the transaction is not a transfer
+     */
+    public static Transfer of(Tx tx) {
+        if (!(tx instanceof SignedTransaction))
+            return null;
+        SignedTransaction signed = (SignedTransaction) tx;
+        ByteBuffer payload = ByteBuffer.wrap(signed.getPayload());
+        if (payload.remaining() != SIZE || payload.getInt() != MAGIC)
+            return null;
+        return new Transfer(account(signed.getPublicKey()), payload.getLong(), payload.getLong(), payload.getLong());
+    }
+
+    /**
+     * Account of a key
+     *
+     * @param key public key
+     * @return account
+     */
+    public static long account(PublicKey key) {
+        return account(key.getEncoded());
+    }
+
+    /**
+     * Account of a key: the first 8 bytes of the SHA-256 of its X.509 encoding
+     *
+     * @param publicKey X.509 encoding of the public key
+     * @return account
+     */
+    public static long account(byte[] publicKey) {
+        return Utils.sha256(publicKey).word(0);
+    }
+
+    /**
+     * Sender getter
+     *
+     * @return account of the sender
+     */
+    public long getSender() {
+        return this.sender;
+    }
+
+    /**
+     * Recipient getter
+     *
+     * @return account of the recipient
+     */
+    public long getRecipient() {
+        return this.recipient;
+    }
+
+    /**
+     * Amount getter
+     *
+     * @return amount transferred
+     */
+    public long getAmount() {
+        return this.amount;
+    }
+
+    /**
+     * Nonce getter
+     *
+     * @return number of transfers sent before by the sender
+     */
+    public long getNonce() {
+        return this.nonce;
+    }
+
+    @Override
+    public String toString() {
+        return "Transfer[" + Long.toHexString(sender) + " -> " + Long.toHexString(recipient) + ": " + amount + "]";
+    }
+}
@@ -9,12 +9,12 @@ public interface Tx {
      *
      * @return hash
      */
-    String getHash();
+    Hash getHash();
 
     /**
      * Calculate a hash of the TX. It's recommended to use its own attributes as well.
      *
      * @return hash calculated
      */
-    String calculateHash();
+    Hash calculateHash();
 }
@@ -0,0 +1,35 @@
+package dumbchain;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary encoding of a transaction type, registered with {@link BinaryCodec#register}.
+ *
+ * @param <T> transaction type
+ */
+public interface TxCodec<T extends Tx> {
+
+    /**
+     * Size of the encoding of a transaction
+     *
+     * @param tx transaction
+     * @return number of bytes written by {@link #encode}
+     */
+    int encodedSize(T tx);
+
+    /**
+     * Write a transaction
+     *
+     * @param tx  transaction
+     * @param dst destination, with at least {@link #encodedSize} bytes remaining
+     */
+    void encode(T tx, ByteBuffer dst);
+
+    /**
+     * Read a transaction
+     *
+     * @param src buffer holding exactly the encoding of the transaction
+     * @return transaction
+     */
+    T decode(ByteBuffer src);
+}
@@ -0,0 +1,44 @@
+package dumbchain;
+
+/**
+ * Position of a transaction in the blockchain
+ */
+public class TxLocation {
+
+    private final int blockId;   // Id of the block holding the transaction
+    private final int position;  // Position of the transaction in the block
+    private final Tx tx;
+
+    TxLocation(int blockId, int position, Tx tx) {
+        this.blockId = blockId;
+        this.position = position;
+        this.tx = tx;
+    }
+
+    /**
+     * Block id getter
+     *
+     * @return id of the block holding the transaction
+     */
+    public int getBlockId() {
+        return this.blockId;
+    }
+
+    /**
+     * Position getter
+     *
+     * @return position of the transaction in the block
+     */
+    public int getPosition() {
+        return this.position;
+    }
+
+    /**
+     * Tx getter
+     *
+     * @return transaction
+     */
+    public Tx getTx() {
+        return this.tx;
+    }
+}
@@ -1,7 +1,18 @@
 package dumbchain;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 
 /**
@@ -10,28 +21,87 @@ import java.util.List;
 
 public class Utils {
 
+    // MessageDigest is not thread safe, every thread reuses its own instance
+    private static final ThreadLocal<MessageDigest> SHA256_DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not available", e);
+        }
+    });
+    // Scratch buffer used to hash a pair of hashes
+    private static final ThreadLocal<byte[]> PAIR_BUFFER = ThreadLocal.withInitial(() -> new byte[Hash.BYTES * 2]);
+    // Gson is thread safe and expensive to build, a single compact instance is shared
+    private static final Gson GSON = gsonBuilder().create();
+
     /**
-     * Calculate the SHA256 of a string.
-     * Thanks to thatman from Stack Overflow
-     * Credits: https://stackoverflow.com/a/44436308
+     * Getter of the SHA-256 digest of the current thread
+     *
+     * @return digest, reset
+     */
+    static MessageDigest digest() {
+        return SHA256_DIGEST.get();
+    }
+
+    /**
+     * Calculate the SHA256 of a string (UTF-8 encoded).
      *
      * @param data data
      * @return hash
      */
-    public static String SHA256(String data) {
-        StringBuffer sb = new StringBuffer();
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            md.update(data.getBytes());
-            byte[] byteData = md.digest();
+    public static Hash sha256(String data) {
+        return sha256(data.getBytes(StandardCharsets.UTF_8));
+    }
 
-            for (int i = 0; i < byteData.length; i++) {
-                sb.append(Integer.toString((byteData[i] & 0xff) + 0x100, 16).substring(1));
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return sb.toString();
+    /**
+     * Calculate the SHA256 of a byte array.
+     *
+     * @param data data
+     * @return hash
+     */
+    public static Hash sha256(byte[] data) {
+        return sha256(data, 0, data.length);
+    }
+
+    /**
+     * Calculate the SHA256 of a slice of a byte array.
+     *
+     * @param data   data
+     * @param offset first byte hashed
+     * @param length number of bytes hashed
+     * @return hash
+     */
+    public static Hash sha256(byte[] data, int offset, int length) {
+        MessageDigest md = SHA256_DIGEST.get();
+        md.update(data, offset, length);
+        return Hash.of(md.digest());
+    }
+
+    /**
+     * Calculate the SHA256 of the remaining bytes of a buffer.
+     * The buffer position is moved to its limit.
+     *
+     * @param data data
+     * @return hash
+     */
+    public static Hash sha256(ByteBuffer data) {
+        MessageDigest md = SHA256_DIGEST.get();
+        md.update(data);
+        return Hash.of(md.digest());
+    }
+
+    /**
+     * Calculate the SHA256 of the concatenation of two hashes.
+     *
+     * @param left  left hash
+     * @param right right hash
+     * @return hash
+     */
+    public static Hash sha256(Hash left, Hash right) {
+        byte[] pair = PAIR_BUFFER.get();
+        left.writeTo(pair, 0);
+        right.writeTo(pair, Hash.BYTES);
+        return sha256(pair, 0, pair.length);
     }
 
     /**
@@ -43,19 +113,18 @@ public class Utils {
      * @return Merkle Tree
      */
     //
-    public static List<String> createMerkleTree(List<Tx> elements) {
-        ArrayList<String> tree = new ArrayList<>();
+    public static List<Hash> createMerkleTree(List<Tx> elements) {
+        ArrayList<Hash> tree = new ArrayList<>();
         for (Tx t : elements) {
-            t.getHash();
             tree.add(t.getHash());
         }
         int levelOffset = 0;
         for (int levelSize = elements.size(); levelSize > 1; levelSize = (levelSize + 1) / 2) {
             for (int left = 0; left < levelSize; left += 2) {
                 int right = Math.min(left + 1, levelSize - 1);
-                String tleft = tree.get(levelOffset + left);
-                String tright = tree.get(levelOffset + right);
-                tree.add(Utils.SHA256(tleft + tright));
+                Hash tleft = tree.get(levelOffset + left);
+                Hash tright = tree.get(levelOffset + right);
+                tree.add(Utils.sha256(tleft, tright));
             }
 
             levelOffset += levelSize;
@@ -63,5 +132,224 @@ public class Utils {
         return tree;
     }
 
+    /**
+     * Creates a Gson builder able to handle the blockchain types.
+     * Hashes are written as hex strings.
+     *
+     * @return builder
+     */
+    public static GsonBuilder gsonBuilder() {
+        return new GsonBuilder()
+                .registerTypeAdapter(Hash.class, new HashAdapter().nullSafe())
+                .registerTypeAdapter(BinaryTransaction.class, new BinaryTxAdapter().nullSafe())
+                .registerTypeAdapter(SignedTransaction.class, new SignedTxAdapter().nullSafe())
+                .registerTypeAdapter(Block.class, new BlockAdapter().nullSafe());
+    }
+
+    /**
+     * Getter of the shared Gson instance, built by {@link #gsonBuilder()}
+     *
+     * @return compact Gson
+     */
+    public static Gson gson() {
+        return GSON;
+    }
+
+    /**
+     * Gson adapter for the Hash type
+     */
+    private static class HashAdapter extends TypeAdapter<Hash> {
+
+        @Override
+        public void write(JsonWriter out, Hash hash) throws IOException {
+            out.value(hash.toHex());
+        }
+
+        @Override
+        public Hash read(JsonReader in) throws IOException {
+            return Hash.fromHex(in.nextString());
+        }
+    }
+
+    /**
+     * Gson adapter for the BinaryTransaction type: the hash and the Base64 encoded payload.
+     */
+    private static class BinaryTxAdapter extends TypeAdapter<BinaryTransaction> {
+
+        @Override
+        public void write(JsonWriter out, BinaryTransaction tx) throws IOException {
+            ByteBuffer payload = tx.getPayload();
+            byte[] bytes = new byte[payload.remaining()];
+            payload.get(bytes);
+            out.beginObject();
+            out.name("hash").value(tx.getHash().toHex());
+            out.name("payload").value(Base64.getEncoder().encodeToString(bytes));
+            out.endObject();
+        }
+
+        @Override
+        public BinaryTransaction read(JsonReader in) throws IOException {
+            Tx tx = BlockAdapter.readTx(in);
+            if (!(tx instanceof BinaryTransaction))
+                throw new RuntimeException("Invalid TX (no payload)");
+            return (BinaryTransaction) tx;
+        }
+    }
+
+    /**
+     * Gson adapter for the SignedTransaction type: the hash, the scheme and the Base64 encoded parts.
+     */
+    private static class SignedTxAdapter extends TypeAdapter<SignedTransaction> {
+
+        @Override
+        public void write(JsonWriter out, SignedTransaction tx) throws IOException {
+            Base64.Encoder base64 = Base64.getEncoder();
+            out.beginObject();
+            out.name("hash").value(tx.getHash().toHex());
+            out.name("scheme").value(tx.getScheme().name());
+            out.name("publicKey").value(base64.encodeToString(tx.getPublicKey()));
+            out.name("payload").value(base64.encodeToString(tx.getPayload()));
+            out.name("signature").value(base64.encodeToString(tx.getSignature()));
+            out.endObject();
+        }
+
+        @Override
+        public SignedTransaction read(JsonReader in) throws IOException {
+            Tx tx = BlockAdapter.readTx(in);
+            if (!(tx instanceof SignedTransaction))
+                throw new RuntimeException("Invalid TX (no signature)");
+            return (SignedTransaction) tx;
+        }
+    }
+
+    /**
+     * Gson adapter for the Block type.
+     * Blocks are written field by field, so a chain can be streamed one block at a time.
+     */
+    private static class BlockAdapter extends TypeAdapter<Block> {
+
+        @Override
+        public void write(JsonWriter out, Block block) throws IOException {
+            out.beginObject();
+            out.name("id").value(block.getId());
+            out.name("version").value(block.getVersion());
+            out.name("hash").value(block.getHash().toHex());
+            out.name("previousHash").value(block.getPreviousHash().toHex());
+            out.name("transactions").beginArray();
+            for (Tx tx : block.getTxs())
+                GSON.toJson(tx, tx.getClass(), out);
+            out.endArray();
+            out.name("timeStamp").value(block.getTimeStamp());
+            out.name("bits").value(block.getBits());
+            out.name("nonce").value(block.getNonce());
+            out.name("txCounter").value(block.getTxCounter());
+            out.name("merkleRoot").value(block.getMerkleRoot().toHex());
+            if (block.getVersion() >= BlockHeader.STATE_ROOT_VERSION)
+                out.name("stateRoot").value(block.getStateRoot().toHex());
+            out.endObject();
+        }
+
+        @Override
+        public Block read(JsonReader in) throws IOException {
+            int id = 0, version = BlockHeader.VERSION, txCounter = 0, bits = 0, nonce = 0;
+            long timeStamp = 0;
+            Hash hash = null, previousHash = Hash.ZERO, merkleRoot = Hash.ZERO, stateRoot = Hash.ZERO;
+            List<Tx> txs = new ArrayList<>();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        id = in.nextInt();
+                        break;
+                    case "version":
+                        version = in.nextInt();
+                        break;
+                    case "hash":
+                        hash = Hash.fromHex(in.nextString());
+                        break;
+                    case "previousHash":
+                        previousHash = Hash.fromHex(in.nextString());
+                        break;
+                    case "transactions":
+                        in.beginArray();
+                        while (in.hasNext())
+                            txs.add(readTx(in));
+                        in.endArray();
+                        break;
+                    case "timeStamp":
+                        timeStamp = in.nextLong();
+                        break;
+                    case "bits":
+                        bits = in.nextInt();
+                        break;
+                    case "nonce":
+                        nonce = in.nextInt();
+                        break;
+                    case "txCounter":
+                        txCounter = in.nextInt();
+                        break;
+                    case "merkleRoot":
+                        merkleRoot = Hash.fromHex(in.nextString());
+                        break;
+                    case "stateRoot":
+                        stateRoot = Hash.fromHex(in.nextString());
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            Block block = new Block(id, version, previousHash, merkleRoot, stateRoot, timeStamp, txCounter, bits,
+                    nonce, hash, txs);
+            if (hash == null)
+                block.updateHash();
+            return block;
+        }
+
+        /**
+         * Read a transaction. The hash is calculated again from the value or the payload.
+         */
+        private static Tx readTx(JsonReader in) throws IOException {
+            String value = null;
+            String payload = null;
+            String scheme = null, publicKey = null, signature = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "value":
+                        value = in.nextString();
+                        break;
+                    case "payload":
+                        payload = in.nextString();
+                        break;
+                    case "scheme":
+                        scheme = in.nextString();
+                        break;
+                    case "publicKey":
+                        publicKey = in.nextString();
+                        break;
+                    case "signature":
+                        signature = in.nextString();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            if (signature != null) {
+                if (scheme == null || publicKey == null || payload == null)
+                    throw new RuntimeException("Invalid signed TX (missing part)");
+                Base64.Decoder base64 = Base64.getDecoder();
+                return new SignedTransaction(SignedTransaction.Scheme.valueOf(scheme), base64.decode(publicKey),
+                        base64.decode(payload), base64.decode(signature));
+            }
+            if (payload != null)
+                return new BinaryTransaction(Base64.getDecoder().decode(payload));
+            if (value == null)
+                throw new RuntimeException("Invalid TX (no value)");
+            return new MinimalTransaction(value);
+        }
+    }
+
 
 }
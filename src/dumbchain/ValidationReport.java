@@ -0,0 +1,147 @@
+package dumbchain;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Result of a blockchain validation: every fault found, ordered by block.
+ */
+public class ValidationReport {
+
+    /**
+     * Kind of problem found in a block
+     */
+    public enum FaultType {
+        INVALID_HASH,
+        INVALID_PREVIOUS_HASH,
+        INVALID_TARGET,
+        UNMINED,
+        INVALID_MERKLE_ROOT,
+        INVALID_SIGNATURE,
+        INVALID_STATE_ROOT,
+        INVALID_TRANSFER
+    }
+
+    private final int from;
+    private final int to;
+    private final List<Fault> faults;
+
+    /**
+     * Creates a new report
+     *
+     * @param from   id of the first block checked
+     * @param to     id of the last block checked, exclusive
+     * @param faults faults found
+     */
+    ValidationReport(int from, int to, Collection<Fault> faults) {
+        this.from = from;
+        this.to = to;
+        List<Fault> sorted = new ArrayList<>(faults);
+        sorted.sort(Comparator.comparingInt(Fault::getBlockId).thenComparing(Fault::getType));
+        this.faults = Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * Check if the validation found no faults
+     *
+     * @return true if the blocks are valid, false otherwise
+     */
+    public boolean isValid() {
+        return faults.isEmpty();
+    }
+
+    /**
+     * Faults getter
+     *
+     * @return faults, ordered by block
+     */
+    public List<Fault> getFaults() {
+        return this.faults;
+    }
+
+    /**
+     * First block checked getter
+     *
+     * @return id of the first block checked
+     */
+    public int getFrom() {
+        return this.from;
+    }
+
+    /**
+     * Last block checked getter
+     *
+     * @return id of the last block checked, exclusive
+     */
+    public int getTo() {
+        return this.to;
+    }
+
+    @Override
+    public String toString() {
+        if (isValid())
+            return "Blocks " + from + "-" + (to - 1) + " valid";
+        StringBuilder sb = new StringBuilder();
+        sb.append(faults.size()).append(" faults in blocks ").append(from).append("-").append(to - 1);
+        for (Fault f : faults)
+            sb.append('\n').append(f.getMessage());
+        return sb.toString();
+    }
+
+    /**
+     * A problem found in a block
+     */
+    public static class Fault {
+        private final int blockId;
+        private final FaultType type;
+        private final String message;
+
+        /**
+         * Creates a new fault
+         *
+         * @param blockId id of the block
+         * @param type    kind of problem
+         * @param message description
+         */
+        Fault(int blockId, FaultType type, String message) {
+            this.blockId = blockId;
+            this.type = type;
+            this.message = message;
+        }
+
+        /**
+         * Block id getter
+         *
+         * @return id of the block
+         */
+        public int getBlockId() {
+            return this.blockId;
+        }
+
+        /**
+         * Type getter
+         *
+         * @return kind of problem
+         */
+        public FaultType getType() {
+            return this.type;
+        }
+
+        /**
+         * Message getter
+         *
+         * @return description
+         */
+        public String getMessage() {
+            return this.message;
+        }
+
+        @Override
+        public String toString() {
+            return this.message;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package dumbchain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountTableTest {
+
+    @Test
+    void accountsAreKeptWhileTheTableGrows() {
+        AccountTable table = new AccountTable(1);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(25);
+        for (int i = 0; i < 100_000; i++) {
+            long account = i < 3 ? i - 1 : random.nextLong();
+            table.put(account, i, i + 1);
+            expected.put(account, (long) i);
+        }
+        assertEquals(expected.size(), table.size());
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertEquals((long) entry.getValue(), table.getBalance(entry.getKey()));
+            assertEquals(entry.getValue() + 1, table.getNonce(entry.getKey()));
+        }
+    }
+
+    @Test
+    void missingAccountIsEmpty() {
+        AccountTable table = new AccountTable();
+        table.put(1, 10, 2);
+        assertEquals(0, table.getBalance(2));
+        assertEquals(0, table.getNonce(2));
+    }
+
+    @Test
+    void putReplacesTheAccount() {
+        AccountTable table = new AccountTable(4);
+        table.put(1, 10, 0);
+        table.put(1, 7, 1);
+        assertEquals(1, table.size());
+        assertEquals(7, table.getBalance(1));
+        assertEquals(1, table.getNonce(1));
+    }
+
+    @Test
+    void copyIsIndependent() {
+        AccountTable table = new AccountTable(4);
+        table.put(1, 10, 0);
+        AccountTable copy = new AccountTable(table);
+        copy.put(1, 5, 1);
+        copy.put(2, 5, 0);
+        assertEquals(10, table.getBalance(1));
+        assertEquals(0, table.getBalance(2));
+        assertEquals(1, table.size());
+        assertEquals(2, copy.size());
+    }
+
+    @Test
+    void overlayStoresOnlyItsChanges() {
+        AccountTable base = new AccountTable(4);
+        for (long account = 0; account < 100; account++)
+            base.put(account, account * 10, 0);
+        AccountTable overlay = AccountTable.overlay(base);
+        assertEquals(0, overlay.size());
+        assertEquals(500, overlay.getBalance(50));
+        for (long account = 90; account < 200; account++)
+            overlay.put(account, 1, 1);
+        assertEquals(110, overlay.size());
+        assertEquals(1, overlay.getBalance(95));
+        assertEquals(1, overlay.getNonce(150));
+        assertEquals(890, overlay.getBalance(89));
+        assertEquals(950, base.getBalance(95));
+        assertEquals(0, base.getBalance(150));
+        assertEquals(100, base.size());
+    }
+
+}
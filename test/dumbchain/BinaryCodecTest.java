@@ -0,0 +1,117 @@
+package dumbchain;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryCodecTest {
+
+    @Test
+    void varintsAreReadBack() {
+        int[] values = {0, 1, 127, 128, 255, 16_383, 16_384, 2_097_151, 2_097_152, Integer.MAX_VALUE, -1};
+        int[] sizes = {1, 1, 1, 2, 2, 2, 3, 3, 4, 5, 5};
+        for (int i = 0; i < values.length; i++) {
+            ByteBuffer buffer = ByteBuffer.allocate(8);
+            BinaryCodec.putVarint(buffer, values[i]);
+            assertEquals(sizes[i], buffer.position(), "size of " + values[i]);
+            assertEquals(sizes[i], BinaryCodec.varintSize(values[i]));
+            buffer.flip();
+            assertEquals(values[i], BinaryCodec.getVarint(buffer));
+            assertFalse(buffer.hasRemaining());
+        }
+    }
+
+    @Test
+    void varintLongerThanFiveBytesIsRejected() {
+        byte[] bytes = new byte[6];
+        Arrays.fill(bytes, (byte) 0x80);
+        assertThrows(RuntimeException.class, () -> BinaryCodec.getVarint(ByteBuffer.wrap(bytes)));
+    }
+
+    @Test
+    void lengthPastTheEndIsRejected() {
+        assertEquals(2, BinaryCodec.getLength(ByteBuffer.wrap(new byte[]{2, 0, 0})));
+        assertThrows(RuntimeException.class, () -> BinaryCodec.getLength(ByteBuffer.wrap(new byte[]{3, 0, 0})));
+        // Negative as a signed int
+        assertThrows(RuntimeException.class,
+                () -> BinaryCodec.getLength(ByteBuffer.wrap(new byte[]{-1, -1, -1, -1, 0x0f})));
+    }
+
+    @Test
+    void blockIsReadBack() throws Exception {
+        Block block = new Block(7, Utils.sha256("previous"), Utils.sha256("state"), 42, 1_000, 0x1f00ffff);
+        List<Tx> txs = new ArrayList<>();
+        txs.add(new MinimalTransaction("plain"));
+        txs.add(new MinimalTransaction("non ascii \u00e8\u20ac\ud83d\ude00"));
+        txs.add(new BinaryTransaction(new byte[]{1, 2, 3}));
+        txs.add(SignedTransaction.sign(KeyPairGenerator.getInstance("Ed25519").generateKeyPair(), new byte[]{4, 5}));
+        block.addTxs(txs);
+
+        ByteBuffer encoded = BinaryCodec.encode(block);
+        assertEquals(BinaryCodec.encodedSize(block), encoded.remaining());
+        Block read = BinaryCodec.decodeBlock(encoded);
+        assertFalse(encoded.hasRemaining());
+        assertEquals(block.getId(), read.getId());
+        assertEquals(block.getVersion(), read.getVersion());
+        assertEquals(block.getPreviousHash(), read.getPreviousHash());
+        assertEquals(block.getStateRoot(), read.getStateRoot());
+        assertEquals(block.getTimeStamp(), read.getTimeStamp());
+        assertEquals(block.getBits(), read.getBits());
+        assertEquals(block.getNonce(), read.getNonce());
+        assertEquals(block.getHash(), read.getHash());
+        assertEquals(block.getHash(), read.calculateHash());
+        assertTrue(read.validateTransactions());
+        for (int i = 0; i < txs.size(); i++)
+            assertEquals(txs.get(i).getHash(), read.getTxs().get(i).getHash());
+        assertTrue(((SignedTransaction) read.getTxs().get(3)).verify());
+    }
+
+    @Test
+    void oldHeadersAreWrittenWithoutTheStateRoot() {
+        Block current = new Block(1, Hash.ZERO, Utils.sha256("state"), 0, 0, 0);
+        Block old = new Block(1, BlockHeader.STATE_ROOT_VERSION - 1, Hash.ZERO, Hash.ZERO, Utils.sha256("state"),
+                0, 0, 0, 0, Hash.ZERO, new ArrayList<>());
+        assertEquals(BinaryCodec.encodedSize(current) - Hash.BYTES, BinaryCodec.encodedSize(old));
+        Block read = BinaryCodec.decodeBlock(BinaryCodec.encode(old));
+        assertEquals(BlockHeader.STATE_ROOT_VERSION - 1, read.getVersion());
+        assertEquals(Hash.ZERO, read.getStateRoot());
+    }
+
+    @Test
+    void unknownFormatAndTypeAreRejected() {
+        ByteBuffer block = BinaryCodec.encode(new Block(0, Hash.ZERO, Hash.ZERO, 0, 0, 0));
+        block.put(0, (byte) (BinaryCodec.FORMAT + 1));
+        assertThrows(RuntimeException.class, () -> BinaryCodec.decodeBlock(block));
+        assertThrows(RuntimeException.class, () -> BinaryCodec.decodeTx(ByteBuffer.wrap(new byte[]{99, 0})));
+        assertThrows(RuntimeException.class, () -> BinaryCodec.register(BinaryCodec.MINIMAL_TX,
+                BinaryTransaction.class, null));
+    }
+
+    @Test
+    void truncatedTransactionIsRejected() {
+        ByteBuffer tx = ByteBuffer.allocate(BinaryCodec.encodedSize(new MinimalTransaction("value")));
+        BinaryCodec.encode(new MinimalTransaction("value"), tx);
+        tx.flip().limit(tx.limit() - 1);
+        assertThrows(RuntimeException.class, () -> BinaryCodec.decodeTx(tx));
+    }
+
+    @Test
+    void utf8IsWrittenLikeTheJdk() {
+        String[] strings = {"", "ascii", "\u00e8\u00e0", "\u20ac", "\ud83d\ude00", "unpaired \ud83d end", "\ude00"};
+        for (String s : strings) {
+            byte[] expected = s.getBytes(StandardCharsets.UTF_8);
+            assertEquals(expected.length, BinaryCodec.utf8Length(s), s);
+            ByteBuffer buffer = ByteBuffer.allocate(expected.length);
+            BinaryCodec.putUtf8(buffer, s);
+            assertTrue(Arrays.equals(expected, buffer.array()), s);
+        }
+    }
+
+}
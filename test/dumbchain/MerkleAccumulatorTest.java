@@ -0,0 +1,56 @@
+package dumbchain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MerkleAccumulatorTest {
+
+    @Test
+    void emptyTreeHasTheZeroRoot() {
+        assertEquals(Hash.ZERO, new MerkleAccumulator().root());
+        assertEquals(0, new MerkleAccumulator().size());
+    }
+
+    @Test
+    void rootIsTheOneOfTheFullTree() {
+        List<Tx> txs = new ArrayList<>();
+        MerkleAccumulator accumulator = new MerkleAccumulator();
+        for (int i = 0; i < 300; i++) {
+            Tx tx = new MinimalTransaction("tx" + i);
+            txs.add(tx);
+            accumulator.add(tx.getHash());
+            List<Hash> tree = Utils.createMerkleTree(txs);
+            assertEquals(tree.get(tree.size() - 1), accumulator.root(), "leaves " + txs.size());
+            assertEquals(txs.size(), accumulator.size());
+        }
+    }
+
+    @Test
+    void rootDoesNotChangeTheTree() {
+        MerkleAccumulator accumulator = new MerkleAccumulator();
+        for (int i = 0; i < 7; i++)
+            accumulator.add(Utils.sha256("tx" + i));
+        Hash root = accumulator.root();
+        assertEquals(root, accumulator.root());
+        accumulator.add(Utils.sha256("tx7"));
+        assertNotEquals(root, accumulator.root());
+    }
+
+    @Test
+    void copyIsIndependent() {
+        MerkleAccumulator accumulator = new MerkleAccumulator();
+        for (int i = 0; i < 5; i++)
+            accumulator.add(Utils.sha256("tx" + i));
+        MerkleAccumulator copy = new MerkleAccumulator(accumulator);
+        Hash root = accumulator.root();
+        copy.add(Utils.sha256("tx5"));
+        assertEquals(root, accumulator.root());
+        assertEquals(5, accumulator.size());
+        assertEquals(6, copy.size());
+    }
+
+}
@@ -0,0 +1,92 @@
+package dumbchain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MerkleProofTest {
+
+    @Test
+    void everyTransactionIsProven() {
+        List<Tx> txs = new ArrayList<>();
+        for (int count = 1; count <= 65; count++) {
+            txs.add(new MinimalTransaction("tx" + count));
+            Hash root = MerkleTreeBuilder.SEQUENTIAL.root(txs);
+            for (int index = 0; index < count; index++) {
+                MerkleProof proof = MerkleTreeBuilder.SEQUENTIAL.prove(txs, index);
+                Hash txHash = txs.get(index).getHash();
+                assertEquals(root, proof.computeRoot(), "tx " + index + " of " + count);
+                assertTrue(MerkleProof.verify(txHash, proof, root));
+                assertTrue(MerkleProof.verify(txHash, proof, root, count));
+            }
+        }
+    }
+
+    @Test
+    void proofDoesNotHoldForAnotherTransactionOrRoot() {
+        List<Tx> txs = transactions(10);
+        Hash root = MerkleTreeBuilder.SEQUENTIAL.root(txs);
+        MerkleProof proof = MerkleTreeBuilder.SEQUENTIAL.prove(txs, 3);
+        assertFalse(MerkleProof.verify(txs.get(4).getHash(), proof, root));
+        assertFalse(MerkleProof.verify(txs.get(3).getHash(), proof, Utils.sha256("root")));
+        assertFalse(MerkleProof.verify(txs.get(3).getHash(), proof, root, 11));
+    }
+
+    @Test
+    void positionPastTheLastTransactionIsRejected() {
+        List<Tx> txs = transactions(3);
+        Hash root = MerkleTreeBuilder.SEQUENTIAL.root(txs);
+        MerkleProof last = MerkleTreeBuilder.SEQUENTIAL.prove(txs, 2);
+        assertThrows(RuntimeException.class, () -> new MerkleProof(last.getLeaf(), 3, 3, last.getSiblings()));
+        // The last transaction paired with itself leads to the same root from the position after it
+        MerkleProof phantom = new MerkleProof(last.getLeaf(), 3, 4, last.getSiblings());
+        assertEquals(root, phantom.computeRoot());
+        assertFalse(MerkleProof.verify(last.getLeaf(), phantom, root, txs.size()));
+    }
+
+    @Test
+    void pathOfTheWrongLengthIsRejected() {
+        List<Tx> txs = transactions(5);
+        MerkleProof proof = MerkleTreeBuilder.SEQUENTIAL.prove(txs, 1);
+        Hash[] siblings = proof.getSiblings();
+        assertNull(new MerkleProof(proof.getLeaf(), 1, 5, Arrays.copyOf(siblings, siblings.length - 1)).computeRoot());
+        Hash[] longer = Arrays.copyOf(siblings, siblings.length + 1);
+        longer[siblings.length] = Utils.sha256("extra");
+        assertNull(new MerkleProof(proof.getLeaf(), 1, 5, longer).computeRoot());
+    }
+
+    @Test
+    void blockProofIsVerifiedAgainstTheHeader() {
+        Block block = new Block(0, Hash.ZERO, Hash.ZERO, 0, 0, 0);
+        List<Tx> txs = transactions(7);
+        block.addTxs(txs);
+        for (Tx tx : txs) {
+            MerkleProof proof = block.proveTx(tx.getHash());
+            assertTrue(MerkleProof.verify(tx.getHash(), proof, block.getMerkleRoot(), block.getTxCounter()));
+        }
+        assertThrows(RuntimeException.class, () -> block.proveTx(Utils.sha256("missing")));
+    }
+
+    @Test
+    void serializedProofIsStillValid() {
+        List<Tx> txs = transactions(6);
+        Hash root = MerkleTreeBuilder.SEQUENTIAL.root(txs);
+        MerkleProof proof = MerkleTreeBuilder.SEQUENTIAL.prove(txs, 5);
+        MerkleProof read = Utils.gson().fromJson(proof.serialize(), MerkleProof.class);
+        assertEquals(5, read.getIndex());
+        assertEquals(6, read.getCount());
+        assertTrue(MerkleProof.verify(txs.get(5).getHash(), read, root, txs.size()));
+    }
+
+    private static List<Tx> transactions(int count) {
+        List<Tx> txs = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            txs.add(new MinimalTransaction("tx" + i));
+        return txs;
+    }
+
+}
@@ -0,0 +1,61 @@
+package dumbchain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MerkleTreeBuilderTest {
+
+    @Test
+    void emptyTreeHasTheZeroRoot() {
+        assertEquals(Hash.ZERO, new MerkleTreeBuilder(null, 1).root(new ArrayList<Tx>()));
+        assertEquals(Hash.ZERO, MerkleTreeBuilder.parallel().root(new byte[0], 0));
+    }
+
+    @Test
+    void sequentialAndParallelRootsMatchTheAccumulator() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            MerkleTreeBuilder sequential = new MerkleTreeBuilder(null, 1);
+            // A threshold of one pair splits every level in tasks
+            MerkleTreeBuilder parallel = new MerkleTreeBuilder(pool, 1);
+            List<Tx> txs = new ArrayList<>();
+            MerkleAccumulator accumulator = new MerkleAccumulator();
+            for (int i = 0; i < 300; i++) {
+                Tx tx = new MinimalTransaction("tx" + i);
+                txs.add(tx);
+                accumulator.add(tx.getHash());
+                assertEquals(accumulator.root(), sequential.root(txs), "sequential, leaves " + txs.size());
+                assertEquals(accumulator.root(), parallel.root(txs), "parallel, leaves " + txs.size());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void largeTreesMatchTheAccumulator() {
+        MerkleTreeBuilder builder = MerkleTreeBuilder.parallel();
+        // Around the default threshold of pairs, where the first level starts to be split
+        for (int count : new int[]{2048, 2049, 4097, 20_001}) {
+            byte[] leaves = new byte[count * Hash.BYTES];
+            MerkleAccumulator accumulator = new MerkleAccumulator();
+            for (int i = 0; i < count; i++) {
+                Hash leaf = Utils.sha256("tx" + i);
+                leaf.writeTo(leaves, i * Hash.BYTES);
+                accumulator.add(leaf);
+            }
+            assertEquals(accumulator.root(), builder.root(leaves, count), "leaves " + count);
+        }
+    }
+
+    @Test
+    void invalidThresholdIsRejected() {
+        assertThrows(RuntimeException.class, () -> new MerkleTreeBuilder(null, 0));
+    }
+
+}
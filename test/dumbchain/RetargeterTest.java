@@ -0,0 +1,84 @@
+package dumbchain;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetargeterTest {
+
+    private static final Target INITIAL = Target.ofLeadingZeroBits(20).normalize();
+
+    @Test
+    void firstBlockGetsTheInitialTarget() {
+        Retargeter retargeter = new Retargeter(4, 1000, Target.ofLeadingZeroBits(20));
+        assertEquals(INITIAL, retargeter.nextTarget(new ArrayList<>()));
+    }
+
+    @Test
+    void blocksBetweenAdjustmentsKeepThePreviousTarget() {
+        Retargeter retargeter = new Retargeter(4, 1000, INITIAL);
+        Target harder = scale(INITIAL, 1, 3);
+        List<Block> chain = chain(harder, 0, 10, 20, 30, 40);
+        assertEquals(harder, retargeter.nextTarget(chain));
+        chain.get(4).setBits(0);
+        assertEquals(INITIAL, retargeter.nextTarget(chain));
+    }
+
+    @Test
+    void fasterBlocksGetAHarderTarget() {
+        Retargeter retargeter = new Retargeter(4, 1000, INITIAL);
+        Target previous = scale(INITIAL, 1, 2);
+        assertEquals(scale(previous, 1, 2), retargeter.nextTarget(chain(previous, 0, 500, 1000, 1500)));
+        assertEquals(previous, retargeter.nextTarget(chain(previous, 0, 1000, 2000, 3000)));
+    }
+
+    @Test
+    void adjustmentIsBoundedToAFactorOfFour() {
+        Retargeter retargeter = new Retargeter(4, 1000, INITIAL);
+        Target previous = scale(INITIAL, 1, 16);
+        assertEquals(scale(previous, 1, 4), retargeter.nextTarget(chain(previous, 0, 0, 0, 0)));
+        assertEquals(scale(previous, 4, 1), retargeter.nextTarget(chain(previous, 0, 100_000, 200_000, 300_000)));
+    }
+
+    @Test
+    void targetNeverGetsEasierThanTheInitialOne() {
+        Retargeter retargeter = new Retargeter(4, 1000, INITIAL);
+        assertEquals(INITIAL, retargeter.nextTarget(chain(INITIAL, 0, 100_000, 200_000, 300_000)));
+        assertEquals(INITIAL, retargeter.nextTarget(chain(scale(INITIAL, 1, 2), 0, 10_000, 20_000, 30_000)));
+    }
+
+    @Test
+    void targetNeverReachesZero() {
+        Retargeter retargeter = new Retargeter(4, 1000, INITIAL);
+        Target hardest = Target.of(BigInteger.ONE);
+        assertEquals(hardest, retargeter.nextTarget(chain(hardest, 0, 0, 0, 0)));
+    }
+
+    @Test
+    void invalidParametersAreRejected() {
+        assertThrows(RuntimeException.class, () -> new Retargeter(1, 1000, INITIAL));
+        assertThrows(RuntimeException.class, () -> new Retargeter(4, 0, INITIAL));
+    }
+
+    private static Target scale(Target target, long multiplier, long divisor) {
+        return Target.of(target.toBigInteger()
+                .multiply(BigInteger.valueOf(multiplier))
+                .divide(BigInteger.valueOf(divisor))).normalize();
+    }
+
+    private static List<Block> chain(Target target, long... timeStamps) {
+        List<Block> chain = new ArrayList<>();
+        Hash previous = Hash.ZERO;
+        for (int id = 0; id < timeStamps.length; id++) {
+            Block block = new Block(id, previous, Hash.ZERO, 0, timeStamps[id], target.toCompact());
+            chain.add(block);
+            previous = block.getHash();
+        }
+        return chain;
+    }
+
+}
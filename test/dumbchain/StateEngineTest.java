@@ -0,0 +1,140 @@
+package dumbchain;
+
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StateEngineTest {
+
+    private final KeyPair alice = keys();
+    private final KeyPair bob = keys();
+    private final long carol = 3;
+
+    @Test
+    void initialStateHoldsTheAllocation() {
+        StateEngine state = new StateEngine(allocation());
+        assertEquals(100, state.getBalance(account(alice)));
+        assertEquals(50, state.getBalance(account(bob)));
+        assertEquals(0, state.getBalance(carol));
+        assertEquals(2, state.getAccounts());
+        assertEquals(state.getInitialRoot(), state.getRoot());
+        assertNotEquals(new StateEngine().getRoot(), state.getRoot());
+        assertThrows(RuntimeException.class, () -> new StateEngine(Collections.singletonMap(1L, -1L)));
+    }
+
+    @Test
+    void revertGoesBackThroughTheSameRoots() {
+        StateEngine state = new StateEngine(allocation());
+        List<Tx> txs = Arrays.asList(
+                Transfer.sign(alice, carol, 30, 0),
+                Transfer.sign(bob, account(alice), 20, 0),
+                Transfer.sign(alice, carol, 90, 1));
+        Hash[] roots = state.apply(txs);
+        assertEquals(0, state.getBalance(account(alice)));
+        assertEquals(30, state.getBalance(account(bob)));
+        assertEquals(120, state.getBalance(carol));
+        assertEquals(3, state.getAccounts());
+
+        for (int i = txs.size() - 1; i >= 0; i--) {
+            assertEquals(roots[i], state.getRoot());
+            state.revert(txs.subList(i, i + 1));
+        }
+        assertEquals(state.getInitialRoot(), state.getRoot());
+        assertEquals(100, state.getBalance(account(alice)));
+        assertEquals(0, state.getNonce(account(alice)));
+        assertEquals(0, state.getBalance(carol));
+    }
+
+    @Test
+    void rootDependsOnlyOnTheState() {
+        Tx fromAlice = Transfer.sign(alice, carol, 30, 0);
+        Tx fromBob = Transfer.sign(bob, carol, 20, 0);
+        StateEngine first = new StateEngine(allocation());
+        first.apply(Arrays.asList(fromAlice, fromBob));
+        StateEngine second = new StateEngine(allocation());
+        second.apply(Collections.singletonList(fromBob));
+        second.apply(Collections.singletonList(fromAlice));
+        assertEquals(first.getRoot(), second.getRoot());
+    }
+
+    @Test
+    void transactionsWithoutTransferKeepTheRoot() {
+        StateEngine state = new StateEngine(allocation());
+        Hash[] roots = state.apply(Arrays.asList(
+                new MinimalTransaction("a"),
+                Transfer.sign(alice, carol, 1, 0),
+                new BinaryTransaction(new byte[]{1})));
+        assertEquals(state.getInitialRoot(), roots[0]);
+        assertNotEquals(roots[0], roots[1]);
+        assertEquals(roots[1], roots[2]);
+    }
+
+    @Test
+    void invalidTransferLeavesTheStateUnchanged() {
+        StateEngine state = new StateEngine(allocation());
+        Tx valid = Transfer.sign(alice, carol, 10, 0);
+        List<Tx> invalid = Arrays.asList(
+                Transfer.sign(alice, carol, 10, 5),
+                Transfer.sign(alice, carol, 91, 1),
+                Transfer.sign(alice, carol, 0, 1),
+                Transfer.sign(alice, carol, -1, 1));
+        for (Tx tx : invalid) {
+            assertThrows(RuntimeException.class, () -> state.apply(Arrays.asList(valid, tx)));
+            assertEquals(state.getInitialRoot(), state.getRoot());
+            assertEquals(100, state.getBalance(account(alice)));
+            assertEquals(0, state.getNonce(account(alice)));
+        }
+    }
+
+    @Test
+    void resetGoesBackToTheAllocation() {
+        StateEngine state = new StateEngine(allocation());
+        state.apply(Collections.singletonList(Transfer.sign(alice, carol, 30, 0)));
+        state.reset();
+        assertEquals(state.getInitialRoot(), state.getRoot());
+        assertEquals(100, state.getBalance(account(alice)));
+        assertEquals(0, state.getBalance(carol));
+    }
+
+    @Test
+    void overlayDoesNotChangeTheStateBelow() {
+        StateEngine state = new StateEngine(allocation());
+        List<Tx> txs = Collections.singletonList(Transfer.sign(alice, carol, 30, 0));
+        StateEngine overlay = state.overlay();
+        StateEngine copy = state.copy();
+        overlay.apply(txs);
+        copy.apply(txs);
+        assertEquals(copy.getRoot(), overlay.getRoot());
+        assertEquals(70, overlay.getBalance(account(alice)));
+        assertEquals(state.getInitialRoot(), state.getRoot());
+        assertEquals(100, state.getBalance(account(alice)));
+    }
+
+    private Map<Long, Long> allocation() {
+        Map<Long, Long> allocation = new HashMap<>();
+        allocation.put(account(alice), 100L);
+        allocation.put(account(bob), 50L);
+        return allocation;
+    }
+
+    private static long account(KeyPair keys) {
+        return Transfer.account(keys.getPublic());
+    }
+
+    private static KeyPair keys() {
+        try {
+            return KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+package dumbchain;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TargetTest {
+
+    @Test
+    void compactFormIsKeptByTheDecodedTarget() {
+        for (int bits = 0; bits <= 256; bits++) {
+            Target normalized = Target.ofLeadingZeroBits(bits).normalize();
+            assertEquals(normalized, Target.fromCompact(normalized.toCompact()), "bits " + bits);
+            assertEquals(normalized.toCompact(), normalized.normalize().toCompact(), "bits " + bits);
+        }
+    }
+
+    @Test
+    void normalizeRoundsDown() {
+        Random random = new Random(5);
+        for (int i = 0; i < 1000; i++) {
+            BigInteger value = new BigInteger(1 + random.nextInt(256), random);
+            BigInteger rounded = Target.of(value).normalize().toBigInteger();
+            assertTrue(rounded.compareTo(value) <= 0, "rounded up " + value);
+            // The mantissa keeps whole bytes: at least the 16 most significant bits are kept
+            int lost = Math.max(0, value.bitLength() - 16);
+            assertTrue(value.subtract(rounded).bitLength() <= lost, "rounded " + value + " to " + rounded);
+        }
+    }
+
+    @Test
+    void compactValuesDecodeLikeTheHeaderFormat() {
+        assertEquals(BigInteger.valueOf(0xffff).shiftLeft(8 * 26), Target.fromCompact(0x1d00ffff).toBigInteger());
+        assertEquals(0x1d00ffff, Target.fromCompact(0x1d00ffff).toCompact());
+        assertEquals(BigInteger.valueOf(0x12), Target.fromCompact(0x01120000).toBigInteger());
+        assertEquals(BigInteger.ZERO, Target.fromCompact(0).toBigInteger());
+    }
+
+    @Test
+    void maximumTargetIsClamped() {
+        BigInteger max = BigInteger.ONE.shiftLeft(256).subtract(BigInteger.ONE);
+        assertEquals(Target.MAX, Target.of(max));
+        assertEquals(Target.MAX, Target.of(BigInteger.ONE.shiftLeft(300)));
+        assertEquals(Target.MAX, Target.ofLeadingZeroBits(0));
+        Target compact = Target.MAX.normalize();
+        assertEquals(compact, Target.fromCompact(compact.toCompact()));
+    }
+
+    @Test
+    void hashMeetsTargetLikeTheNumericComparison() {
+        Random random = new Random(7);
+        for (int i = 0; i < 1000; i++) {
+            byte[] digest = new byte[Hash.BYTES];
+            random.nextBytes(digest);
+            Hash hash = Hash.of(digest);
+            Target target = Target.ofLeadingZeroBits(random.nextInt(8));
+            boolean expected = new BigInteger(1, digest).compareTo(target.toBigInteger()) <= 0;
+            assertEquals(expected, target.isMetBy(hash));
+        }
+        Target exact = Target.of(new BigInteger(1, Utils.sha256("dumbchain").toBytes()));
+        assertTrue(exact.isMetBy(Utils.sha256("dumbchain")));
+    }
+
+    @Test
+    void leadingZeroBitsAreCounted() {
+        for (int bits = 0; bits <= 256; bits++)
+            assertEquals(bits, Target.ofLeadingZeroBits(bits).leadingZeroBits());
+    }
+
+    @Test
+    void invalidTargetsAreRejected() {
+        assertThrows(RuntimeException.class, () -> Target.ofLeadingZeroBits(-1));
+        assertThrows(RuntimeException.class, () -> Target.ofLeadingZeroBits(257));
+        assertThrows(RuntimeException.class, () -> Target.of(BigInteger.valueOf(-1)));
+    }
+
+}